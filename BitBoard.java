@@ -0,0 +1,454 @@
+import java.util.*;
+
+/**
+ * Bitboard representation of the TicTacToe board used by the search-based
+ * behavior levels. The AI and Player pieces are kept as two bitmasks where
+ * bit (row * SIZE + col) is set if the piece occupies that tile.
+ */
+public class BitBoard {
+    /**
+     * Number of tiles in the TicTacToe board
+     */
+    public static final int CELLS = TicTacToe.SIZE * TicTacToe.SIZE;
+    /**
+     * Mask with every tile of the board set
+     */
+    public static final int FULL = (1 << CELLS) - 1;
+    /**
+     * Masks of every winning line, in the same order evaluate() scans them:
+     * rows, columns, left diagonal, right diagonal
+     */
+    public static final int[] LINES = new int[2 * TicTacToe.SIZE + 2];
+    /**
+     * Mask of the four corner tiles
+     */
+    public static final int CORNERS = bit(0, 0) | bit(0, TicTacToe.SIZE - 1) |
+                                      bit(TicTacToe.SIZE - 1, 0) | bit(TicTacToe.SIZE - 1, TicTacToe.SIZE - 1);
+    /**
+     * Mask of the top left and bottom right corner tiles
+     */
+    public static final int LEFT_CORNERS = bit(0, 0) | bit(TicTacToe.SIZE - 1, TicTacToe.SIZE - 1);
+    /**
+     * Mask of the top right and bottom left corner tiles
+     */
+    public static final int RIGHT_CORNERS = bit(0, TicTacToe.SIZE - 1) | bit(TicTacToe.SIZE - 1, 0);
+    /**
+     * Indexes into LINES of the lines through each tile
+     */
+    private static final int[][] CELL_LINES = new int[CELLS][];
+    /**
+     * Contribution of a line to evalFunction() by its number of AI pieces a
+     * and Player pieces p, at index a * (SIZE + 1) + p: pAI - (3dPlayer + pPlayer)
+     */
+    private static final int[] LINE_SCORES = new int[(TicTacToe.SIZE + 1) * (TicTacToe.SIZE + 1)];
+    /**
+     * Corner terms of evalFunction() (2cAI + oAI) by the AI corner pattern of
+     * corners(): bit 0 top left, bit 1 top right, bit 2 bottom left, bit 3 bottom right
+     */
+    private static final int[] CORNER_SCORES = new int[1 << 4];
+
+    /**
+     * Zobrist keys of the AI pieces, one per tile
+     */
+    private static final long[] AI_KEYS = new long[CELLS];
+    /**
+     * Zobrist keys of the Player pieces, one per tile
+     */
+    private static final long[] PLAYER_KEYS = new long[CELLS];
+    /**
+     * Zobrist key toggled in when the AI is the side to move
+     */
+    public static final long AI_TO_MOVE;
+    /**
+     * Key toggled into the hashes of positions scored by distance to the
+     * end of the game (behavior level 4)
+     */
+    public static final long DISTANCE_SCORES;
+
+    static {
+        // fixed seed so hashes are reproducible between runs
+        Random rand = new Random (0x7AC7AC70EL);
+        for (int cell = 0; cell < CELLS; cell++) {
+            AI_KEYS[cell] = rand.nextLong();
+            PLAYER_KEYS[cell] = rand.nextLong();
+        }
+        AI_TO_MOVE = rand.nextLong();
+        DISTANCE_SCORES = rand.nextLong();
+
+        // the shared SIZE in a row windows, in the same order, so CELL_LINES index LINES
+        LineTable lines = LineTable.of(TicTacToe.SIZE, TicTacToe.SIZE);
+        for (int line = 0; line < LINES.length; line++)
+            for (int cell : lines.getLine(line))
+                LINES[line] |= 1 << cell;
+        for (int cell = 0; cell < CELLS; cell++)
+            CELL_LINES[cell] = lines.getCellLines(cell);
+
+        for (int a = 0; a <= TicTacToe.SIZE; a++)
+            for (int p = 0; p <= TicTacToe.SIZE; p++) {
+                int score = 0;
+                if (p == 0 && a != 0)
+                    score = 1;
+                else if (a == 0 && p != 0)
+                    score = p == TicTacToe.SIZE - 1 ? -4 : -1;
+                LINE_SCORES[a * (TicTacToe.SIZE + 1) + p] = score;
+            }
+        for (int pattern = 0; pattern < CORNER_SCORES.length; pattern++)
+            CORNER_SCORES[pattern] = 2 * Integer.bitCount(pattern) + ((pattern & 9) == 9 ? 1 : 0) +
+                                     ((pattern & 6) == 6 ? 1 : 0);
+    }
+
+    /**
+     * Tiles occupied by the AI
+     */
+    private int ai;
+    /**
+     * Tiles occupied by the Player
+     */
+    private int player;
+    /**
+     * Zobrist hashes of the pieces under each of the 8 symmetries of the board,
+     * updated on every play() and undo(). Index 0 is the hash of the board as is.
+     */
+    private long[] hashes = new long[Symmetry.COUNT];
+    /**
+     * Number of AI pieces in each line of LINES, updated on every play() and undo()
+     */
+    private int[] aiCounts = new int[LINES.length];
+    /**
+     * Number of Player pieces in each line of LINES, updated on every play() and undo()
+     */
+    private int[] playerCounts = new int[LINES.length];
+    /**
+     * Number of lines filled by the AI
+     */
+    private int aiLines;
+    /**
+     * Number of lines filled by the Player
+     */
+    private int playerLines;
+    /**
+     * Value of evalFunction() for the current pieces, updated on every
+     * play() and undo() from the lines through the tile only
+     */
+    private int score;
+
+    /**
+     * Gets the bit of a tile
+     *
+     * @param   row     row of the tile
+     * @param   col     column of the tile
+     *
+     * @return  the mask with only the given tile set
+     */
+    public static int bit (int row, int col) {
+        return 1 << (row * TicTacToe.SIZE + col);
+    }
+
+    /**
+     * Copies the pieces of a character board into this bitboard
+     *
+     * @param   board   the board to copy
+     * @param   AI      symbol of the AI pieces
+     * @param   PLAYER  symbol of the Player pieces
+     */
+    public void load (char[][] board, char AI, char PLAYER) {
+        ai = player = 0;
+        Arrays.fill(hashes, 0);
+        Arrays.fill(aiCounts, 0);
+        Arrays.fill(playerCounts, 0);
+        aiLines = playerLines = score = 0;
+
+        for (int row = 0; row < TicTacToe.SIZE; row++)
+            for (int col = 0; col < TicTacToe.SIZE; col++)
+                if (board[row][col] == AI)
+                    play(row * TicTacToe.SIZE + col, true);
+                else if (board[row][col] == PLAYER)
+                    play(row * TicTacToe.SIZE + col, false);
+    }
+
+    /**
+     * Gets the tiles occupied by the AI
+     *
+     * @return the AI bitmask
+     */
+    public int getAI () {
+        return ai;
+    }
+
+    /**
+     * Gets the tiles occupied by the Player
+     *
+     * @return the Player bitmask
+     */
+    public int getPlayer () {
+        return player;
+    }
+
+    /**
+     * Gets the Zobrist hash of the pieces on the board. The side to move is
+     * not part of the hash, XOR in AI_TO_MOVE when the AI is to move.
+     *
+     * @return the hash of the current board state
+     */
+    public long getHash () {
+        return hashes[0];
+    }
+
+    /**
+     * Gets a hash shared by all 8 symmetric versions of the board, the lowest
+     * of their Zobrist hashes. Like getHash() it excludes the side to move.
+     *
+     * @return the hash of the canonical board state
+     */
+    public long getCanonicalHash () {
+        long min = hashes[0];
+
+        for (int t = 1; t < Symmetry.COUNT; t++)
+            min = Math.min(min, hashes[t]);
+
+        return min;
+    }
+
+    /**
+     * Gets the symmetry whose hash is the canonical hash, to store moves in
+     * the orientation of the canonical board (Symmetry.PERM) and map them
+     * back (Symmetry.INVERSE)
+     *
+     * @return the index of the symmetry
+     */
+    public int getCanonicalSymmetry () {
+        int best = 0;
+
+        for (int t = 1; t < Symmetry.COUNT; t++)
+            if (hashes[t] < hashes[best])
+                best = t;
+
+        return best;
+    }
+
+    /**
+     * Gets the empty tiles worth searching, leaving out the moves
+     * equivalent by symmetry to a lower tile
+     *
+     * @return the bitmask of empty tiles without symmetric duplicates
+     */
+    public int getUniqueMoves () {
+        return Symmetry.uniqueMoves(ai, player);
+    }
+
+    /**
+     * Gets the empty tiles, iterating its set bits from lowest to highest
+     * visits the tiles in row-major order
+     *
+     * @return the bitmask of empty tiles
+     */
+    public int getEmpty () {
+        return ~(ai | player) & FULL;
+    }
+
+    /**
+     * Gets the number of empty tiles left
+     *
+     * @return the number of empty tiles left
+     */
+    public int getMovesLeft () {
+        return CELLS - Integer.bitCount(ai | player);
+    }
+
+    /**
+     * Occupies an empty tile
+     *
+     * @param   cell    index of the tile (row * SIZE + col)
+     * @param   isAI    true if the AI occupies the tile, false if the Player does
+     */
+    public void play (int cell, boolean isAI) {
+        long[] keys;
+
+        if (isAI) {
+            score -= CORNER_SCORES[corners(ai)];
+            ai |= 1 << cell;
+            keys = AI_KEYS;
+            score += CORNER_SCORES[corners(ai)];
+        } else {
+            player |= 1 << cell;
+            keys = PLAYER_KEYS;
+        }
+        count(cell, isAI, 1);
+
+        for (int t = 0; t < Symmetry.COUNT; t++)
+            hashes[t] ^= keys[Symmetry.PERM[t][cell]];
+    }
+
+    /**
+     * Empties a tile previously occupied through play()
+     *
+     * @param   cell    index of the tile (row * SIZE + col)
+     * @param   isAI    true if the AI occupied the tile, false if the Player did
+     */
+    public void undo (int cell, boolean isAI) {
+        long[] keys;
+
+        if (isAI) {
+            score -= CORNER_SCORES[corners(ai)];
+            ai &= ~(1 << cell);
+            keys = AI_KEYS;
+            score += CORNER_SCORES[corners(ai)];
+        } else {
+            player &= ~(1 << cell);
+            keys = PLAYER_KEYS;
+        }
+        count(cell, isAI, -1);
+
+        for (int t = 0; t < Symmetry.COUNT; t++)
+            hashes[t] ^= keys[Symmetry.PERM[t][cell]];
+    }
+
+    /**
+     * Adds a piece to or removes it from the counts of the lines through its
+     * tile, updating the filled lines and the line terms of the score
+     *
+     * @param   cell    index of the tile (row * SIZE + col)
+     * @param   isAI    true if the piece is the AI's, false if the Player's
+     * @param   delta   1 when the piece is played, -1 when it is undone
+     */
+    private void count (int cell, boolean isAI, int delta) {
+        int[] counts = isAI ? aiCounts : playerCounts;
+
+        for (int line : CELL_LINES[cell]) {
+            score -= LINE_SCORES[aiCounts[line] * (TicTacToe.SIZE + 1) + playerCounts[line]];
+            if (counts[line] == TicTacToe.SIZE)
+                filled(isAI, -1);
+            counts[line] += delta;
+            if (counts[line] == TicTacToe.SIZE)
+                filled(isAI, 1);
+            score += LINE_SCORES[aiCounts[line] * (TicTacToe.SIZE + 1) + playerCounts[line]];
+        }
+    }
+
+    /**
+     * Updates the number of lines filled by a side
+     *
+     * @param   isAI    true for the AI, false for the Player
+     * @param   delta   change of the number of filled lines
+     */
+    private void filled (boolean isAI, int delta) {
+        if (isAI)
+            aiLines += delta;
+        else
+            playerLines += delta;
+    }
+
+    /**
+     * Gathers the corner tiles of a bitmask into an index of CORNER_SCORES
+     *
+     * @param   pieces  bitmask of the pieces
+     *
+     * @return  the 4 bit corner pattern: top left, top right, bottom left, bottom right
+     */
+    private static int corners (int pieces) {
+        return (pieces & 1) | (pieces >> (TicTacToe.SIZE - 2) & 2) |
+               (pieces >> (CELLS - TicTacToe.SIZE - 2) & 4) | (pieces >> (CELLS - 4) & 8);
+    }
+
+    /**
+     * Checks if a set of pieces completes one of the winning lines
+     *
+     * @param   pieces  bitmask of the pieces to check
+     *
+     * @return  true if the pieces fill a row, column or diagonal
+     */
+    public static boolean hasWon (int pieces) {
+        for (int line : LINES)
+            if ((pieces & line) == line)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Checks if the piece just played on a tile completes a line, looking only
+     * at the lines through that tile
+     *
+     * @param   pieces  bitmask of the pieces of the side that played, including the tile
+     * @param   cell    index of the tile (row * SIZE + col)
+     *
+     * @return  true if a row, column or diagonal through the tile is filled
+     */
+    public static boolean wins (int pieces, int cell) {
+        for (int line : CELL_LINES[cell])
+            if ((pieces & LINES[line]) == LINES[line])
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Same as TicTacToe.evaluate(), checks for a winning line in the same order
+     * before falling back to the static evaluation function. Read from the line
+     * counts kept by play() and undo(), the board is only scanned if both sides
+     * have filled a line.
+     *
+     * @return the maximum integer value if the AI won, the minimum integer value
+     *         if the Player won, otherwise the score of evalFunction()
+     */
+    public int evaluate () {
+        if (aiLines == 0 && playerLines == 0)
+            return score;
+        if (playerLines == 0)
+            return Integer.MAX_VALUE;
+        if (aiLines == 0)
+            return Integer.MIN_VALUE;
+
+        return evaluate(ai, player);
+    }
+
+    /**
+     * Same as TicTacToe.evalFunction(), read from the score kept by play() and undo():
+     * f(n) = (pAI + 2cAI + oAI) - (3dPlayer + pPlayer);
+     *
+     * @return an integer representing the evaluation of the board state
+     */
+    public int evalFunction () {
+        return score;
+    }
+
+    /**
+     * Scans the lines of a board for a winning line, then falls back to the
+     * static evaluation function. Reference for evaluate().
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return the maximum integer value if the AI won, the minimum integer value
+     *         if the Player won, otherwise the score of evalFunction(ai, player)
+     */
+    public static int evaluate (int ai, int player) {
+        for (int line : LINES) {
+            if ((ai & line) == line)
+                return Integer.MAX_VALUE;
+            else if ((player & line) == line)
+                return Integer.MIN_VALUE;
+        }
+
+        return evalFunction(ai, player);
+    }
+
+    /**
+     * Computes the static evaluation function of a board from scratch: one
+     * lookup of LINE_SCORES per line, indexed by the piece counts of both
+     * sides in it, plus one lookup of the corner terms
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return an integer representing the evaluation of the board state
+     */
+    public static int evalFunction (int ai, int player) {
+        int score = CORNER_SCORES[corners(ai)];
+
+        for (int line : LINES)
+            score += LINE_SCORES[Integer.bitCount(ai & line) * (TicTacToe.SIZE + 1) + Integer.bitCount(player & line)];
+
+        return score;
+    }
+}
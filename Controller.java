@@ -8,6 +8,7 @@ import javafx.application.*;
 import javafx.event.*;
 
 import java.util.Random;
+import java.util.concurrent.*;
 
 public class Controller implements EventHandler<Event>, ChangeListener<String> {
     /**
@@ -40,6 +41,30 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
      * Current score of the Player over the AI.
      */
     private int playerScore;
+    /**
+     * Background thread the AI searches its moves on, so the JavaFX
+     * application thread keeps drawing and playing sounds meanwhile.
+     */
+    private ExecutorService searcher;
+    /**
+     * Copy of the game the AI searches on, the game itself is only changed
+     * on the JavaFX application thread.
+     */
+    private TicTacToe searchGame;
+    /**
+     * Boolean value representing if the AI is searching for its move.
+     */
+    private boolean thinking;
+    /**
+     * Number of searches cancelled so far, a finished search whose number
+     * is outdated is ignored.
+     */
+    private int searchId;
+    /**
+     * Monte Carlo tree search of behavior level 5 on every core, shared by the
+     * search copies as the AI search thread runs one search at a time.
+     */
+    private MonteCarloSearch monteCarlo;
 
     /**
      * Constructor for the Controller.
@@ -53,42 +78,110 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
         this.view.setEventHandlers (this);
         /* Initialize TicTacToe instance */
         game = new TicTacToe ();
+        searchGame = new TicTacToe ();
+        monteCarlo = new MonteCarloSearch (Runtime.getRuntime ().availableProcessors (), false,
+                                           MonteCarloSearch.EXPLORATION, MonteCarloSearch.CAPACITY);
+        searchGame.setMonteCarlo (monteCarlo);
+        /* Initialize the AI search thread, it does not keep the application running */
+        searcher = Executors.newSingleThreadExecutor (task -> {
+            Thread thread = new Thread (task, "ai-search");
+            thread.setDaemon (true);
+            return thread;
+        });
     }
 
     /**
      * Makes the AI place a piece on the board. Coordinates with the StackPane event 
-     * in handler() as to whose move it is currently.
+     * in handler() as to whose move it is currently. The move is searched on the
+     * AI search thread and placed by AIMoveFound() once the search is done.
      */
     public void AIMove () {
         /* If it is the AI's turn AND the game is not over yet */
         if (AITurn && !gameOver) {
-            /* Make AI select move based on intelligence level chosen by the user */
-            game.pickAIMove();
-            /* Update GUI board state */
-            view.updateBoard (game.getBoard ());
-            /* Switch turn to Player */
-            AITurn = false;
-            /* Check if game is over */
-            isGameOver ();
+            if (!thinking) {
+                int id = searchId;
+                TicTacToe search = searchGame;
+
+                /* Show thinking state until the move is found */
+                thinking = true;
+                view.setThinking (true);
+                /* Make AI select move based on intelligence level chosen by the user, on a copy of the game */
+                search.copyGame (game);
+                search.setHalted (false);
+                searcher.execute (() -> {
+                    search.pickAIMove ();
+                    int cell = search.getLastMove ();
+                    /* Hand the move over to the JavaFX application thread */
+                    Platform.runLater (() -> AIMoveFound (id, cell));
+                });
+            }
+            return;
         }
 
+        showGameOver ();
+    }
+
+    /**
+     * Places the move found by the AI search on the board. Called on the JavaFX
+     * application thread, a move of a cancelled search is ignored.
+     * 
+     * @param id        number of the search when it was started
+     * @param cell      tile of the AI's move (row * SIZE + col), -1 if it placed none
+     */
+    private void AIMoveFound (int id, int cell) {
+        if (id != searchId)
+            return;
+
+        thinking = false;
+        view.setThinking (false);
+        if (cell != -1)
+            game.play (cell / TicTacToe.SIZE, cell % TicTacToe.SIZE, true);
+        /* Update GUI board state */
+        view.updateBoard (game.getBoard ());
+        /* Switch turn to Player */
+        AITurn = false;
+        /* Check if game is over */
+        isGameOver ();
+
+        showGameOver ();
+    }
+
+    /**
+     * Stops the AI search if one is running. Its move will not be placed.
+     */
+    private void cancelAIMove () {
+        if (thinking) {
+            searchId += 1;
+            searchGame.setHalted (true);
+            /* The halted search may still be returning, the next one runs on a new copy */
+            searchGame = new TicTacToe ();
+            searchGame.setMonteCarlo (monteCarlo);
+            thinking = false;
+            view.setThinking (false);
+        }
+    }
+
+    /**
+     * Shows the result of the game and updates the score board if the game is over.
+     */
+    private void showGameOver () {
         /* If game over */
         if (gameOver) {
             /* Show final board state */
             view.updateBoard (game.getBoard ());
             
             /* If AI Won */ 
-            if (game.evaluate() == Integer.MAX_VALUE) {
+            if (game.getStatus () == GameStatus.AI_WIN) {
                 view.playLose();
                 view.showPlayAgainPrompt ("AI WON! You Lose!");
                 AIScore += 1;
             /* If Player Won */
-            } else if (game.evaluate() == Integer.MIN_VALUE) {
+            } else if (game.getStatus () == GameStatus.PLAYER_WIN) {
                 view.playWin();
                 view.showPlayAgainPrompt ("AI LOST! You Won!");
                 playerScore += 1;
             /* If Tie */
-            } else if (game.getMovesLeft () == 0) {
+            } else if (game.getStatus () == GameStatus.DRAW) {
                 view.playTie();
                 view.showPlayAgainPrompt ("It's a Draw!");
             }
@@ -104,7 +197,7 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
         if (isValidNumber (curr)) {
             int currLevelInput = Integer.parseInt (curr);
 
-            if (currLevelInput < 0 || currLevelInput > 4)
+            if (currLevelInput < 0 || currLevelInput >= TicTacToe.LEVELS)
                 view.setDisableStartBtn (true);
             else view.setDisableStartBtn (false);
         } else view.setDisableStartBtn (true);
@@ -116,20 +209,18 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
     }
 
     /**
-     * Checks if the game is already over. Assigns true to gameOver attribute if game is over; Otherwise false.
+     * Checks if the game is already over, from the status kept by the game. Assigns true to gameOver attribute if game is over; Otherwise false.
      */
     public void isGameOver () {
-        if (game.evaluate () == Integer.MAX_VALUE ||
-            game.evaluate () == Integer.MIN_VALUE ||
-            game.getMovesLeft () == 0)
+        if (game.getStatus () != GameStatus.IN_PROGRESS)
             gameOver = true;
     }
 
     /**
-     * Checks if a string is an integer within 0 to 4.  
+     * Checks if a string is a behavior level, an integer within 0 to TicTacToe.LEVELS - 1.  
      * 
      * @param   s the string to be checked
-     * @return  true if the string is an integer and is within 8 to 64, otherwise false.
+     * @return  true if the string is an integer and is a behavior level, otherwise false.
      */
     private boolean isValidNumber (String s) {
         int num;
@@ -142,8 +233,8 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
             return false;
         }
 
-        /* IF AN INTEGER, CHECK IF WITHIN 8 TO 64 */
-        if (num >= 0 && num <= 4)
+        /* IF AN INTEGER, CHECK IF A BEHAVIOR LEVEL */
+        if (num >= 0 && num < TicTacToe.LEVELS)
             return true;
         else return false;
     }
@@ -156,6 +247,7 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
                 /* START GAME BUTTON */
                 case "startGame":
                     view.playClick();
+                    cancelAIMove ();
                     /* Set game to not over */
                     gameOver = false;
 
@@ -185,6 +277,7 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
                 /* PLAY AGIAN BUTTON */
                 case "playAgain":
                     view.playClick();
+                    cancelAIMove ();
                     /* Close play again prompt */
                     view.closePlayAgainPrompt ();
                     /* Revert first move */
@@ -215,14 +308,18 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
                     break;
                 case "backToMainMenu":
                     view.playClick();
+                    cancelAIMove ();
                     view.showMainMenu ();
                     break;
             }
         /* IF STACKPANE (IN-GAME) */
         } else if (event.getSource () instanceof StackPane) {
             boolean validMove = true;
+            /* Ignore clicks while the AI is searching for its move */
+            if (thinking)
+                validMove = false;
             /* If game is not over just yet */
-            if (!gameOver) {
+            else if (!gameOver) {
                 /* Get the ID of the clicked stack pane (0 0, 0 1, 0 2, etc.) */
                 /* Parse StackPane ID */
                 String[] parts = ((StackPane) event.getSource ()).getId ().trim ().split (" ");
@@ -234,7 +331,7 @@ public class Controller implements EventHandler<Event>, ChangeListener<String> {
                     else
                         view.playO();
                     /* Save player move to board */
-                    game.getBoard()[Integer.parseInt(parts[0])][Integer.parseInt(parts[1])] = game.getPlayer ();
+                    game.play (Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), false);
                     /* Update board state */
                     view.updateBoard (game.getBoard ());
                     /* Return turn to AI */
@@ -0,0 +1,108 @@
+/**
+ * Reentrant AI move API: takes an immutable GameState and returns the move of
+ * a behavior level, without any state shared between calls of different
+ * threads. Each thread searches on its own TicTacToe context (bitboard,
+ * transposition table, move ordering, random number generator) that is kept
+ * and reused by every later call of that thread, so one JVM can serve many
+ * concurrent games from any number of threads.
+ */
+public class Engine {
+    /**
+     * Search context of each calling thread
+     */
+    private static final ThreadLocal<TicTacToe> CONTEXTS = ThreadLocal.withInitial(TicTacToe::new);
+    /**
+     * Behavior level of the AI
+     */
+    private final int level;
+    /**
+     * Search implementation of behavior level 3
+     */
+    private final SearchMode mode;
+
+    /**
+     * Creates an engine playing a behavior level with the default level 3 search
+     *
+     * @param   level   behavior level value (0 - 5)
+     */
+    public Engine (int level) {
+        this(level, SearchMode.MINIMAX);
+    }
+
+    /**
+     * Creates an engine playing a behavior level
+     *
+     * @param   level   behavior level value (0 - 5)
+     * @param   mode    search implementation of behavior level 3
+     *
+     * @throws IllegalArgumentException if the level does not exist
+     */
+    public Engine (int level, SearchMode mode) {
+        if (level < 0 || level >= TicTacToe.LEVELS)
+            throw new IllegalArgumentException ("No behavior level " + level);
+
+        this.level = level;
+        this.mode = mode;
+    }
+
+    /**
+     * Gets the behavior level of the engine
+     *
+     * @return the behavior level value
+     */
+    public int getLevel () {
+        return level;
+    }
+
+    /**
+     * Picks the AI's move in a position. Safe to call from any number of threads.
+     *
+     * @param   state   position with the AI to move
+     *
+     * @return  the index of the chosen tile (row * SIZE + col), -1 if the game
+     *          is over or the level plays no move (level 3 when every move loses)
+     *
+     * @throws IllegalArgumentException if it is not the AI's turn
+     */
+    public int pickMove (GameState state) {
+        if (state.isOver())
+            return -1;
+        if (!state.isAITurn())
+            throw new IllegalArgumentException ("Not the AI's turn: " + state);
+
+        TicTacToe context = CONTEXTS.get();
+        char[][] board = context.getBoard();
+
+        context.setGamePieces(state.isAIFirstMove());
+        context.setAILevel(level);
+        context.setSearchMode(mode);
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            board[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] =
+                (state.getAI() & 1 << cell) != 0 ? context.getAI() :
+                (state.getPlayer() & 1 << cell) != 0 ? context.getPlayer() : TicTacToe.EMPTY;
+
+        context.pickAIMove();
+        return context.getLastMove();
+    }
+
+    /**
+     * Picks the AI's move and plays it
+     *
+     * @param   state   position with the AI to move
+     *
+     * @return  the position after the AI's move, the same position if no move was played
+     */
+    public GameState play (GameState state) {
+        int cell = pickMove(state);
+        return cell == -1 ? state : state.play(cell);
+    }
+
+    /**
+     * Gets the statistics of the last move picked on the calling thread
+     *
+     * @return the statistics, null if the thread has not picked a move yet
+     */
+    public static SearchStats getSearchStats () {
+        return CONTEXTS.get().getSearchStats();
+    }
+}
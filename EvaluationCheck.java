@@ -0,0 +1,203 @@
+import java.util.*;
+
+/**
+ * Randomized equivalence check of the incremental evaluation kept by
+ * BitBoard.play() and undo() against the full board scan. Loads every one of
+ * the 3^9 boards, then makes and unmakes random moves of either side (legal or
+ * not, so boards where both sides have won are covered too) and compares
+ * evaluate() and evalFunction() with the scan after every step. The table
+ * lookups of BitBoard.evalFunction(ai, player) are checked against the
+ * evaluation function term by term on every board. A GridBoard
+ * of the same size follows the walks and has to agree with the bitboard, and
+ * a walk of the same length on a larger GridBoard is checked against a scan
+ * of its windows.
+ *
+ * Usage: java EvaluationCheck [steps] [seed] [size] [length]
+ */
+public class EvaluationCheck {
+    public static void main (String[] args) {
+        long steps = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime ();
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        int length = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        long mismatches = 0;
+        BitBoard position = new BitBoard ();
+        GridBoard grid = new GridBoard (TicTacToe.SIZE, TicTacToe.SIZE);
+        char[][] board = new char[TicTacToe.SIZE][TicTacToe.SIZE];
+
+        // every board through load()
+        int boards = 1;
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            boards *= 3;
+        for (int code = 0; code < boards; code++) {
+            for (int cell = 0, rest = code; cell < BitBoard.CELLS; cell++, rest /= 3)
+                board[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] = rest % 3 == 0 ? TicTacToe.EMPTY : rest % 3 == 1 ? 'X' : 'O';
+            position.load(board, 'X', 'O');
+            if (!matches(position))
+                mismatches++;
+        }
+
+        // random make/unmake walks
+        Random random = new Random (seed);
+        int[] played = new int[BitBoard.CELLS];
+        boolean[] side = new boolean[BitBoard.CELLS];
+        int depth = 0;
+
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            board[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] = TicTacToe.EMPTY;
+        position.load(board, 'X', 'O');
+
+        for (long step = 0; step < steps; step++) {
+            int empty = position.getEmpty();
+
+            if (depth > 0 && (empty == 0 || random.nextInt(3) == 0)) {
+                depth--;
+                position.undo(played[depth], side[depth]);
+                grid.undo(played[depth], side[depth]);
+            } else {
+                for (int skip = random.nextInt(Integer.bitCount(empty)); skip > 0; skip--)
+                    empty &= empty - 1;
+                played[depth] = Integer.numberOfTrailingZeros(empty);
+                side[depth] = random.nextBoolean();
+                position.play(played[depth], side[depth]);
+                grid.play(played[depth], side[depth]);
+                depth++;
+            }
+
+            if (!matches(position) || grid.evaluate() != position.evaluate() ||
+                grid.getPieces() != Integer.bitCount(position.getAI() | position.getPlayer()))
+                mismatches++;
+        }
+
+        // random make/unmake walk on a larger board
+        GridBoard large = new GridBoard (size, length);
+        played = new int[large.getCells()];
+        side = new boolean[large.getCells()];
+        depth = 0;
+
+        for (long step = 0; step < steps; step++) {
+            if (depth > 0 && (large.getMovesLeft() == 0 || random.nextInt(3) == 0)) {
+                depth--;
+                large.undo(played[depth], side[depth]);
+            } else {
+                int cell = large.firstEmpty();
+                for (int skip = random.nextInt(large.getMovesLeft()); skip > 0; skip--)
+                    cell = large.nextEmpty(cell);
+                played[depth] = cell;
+                side[depth] = random.nextBoolean();
+                large.play(played[depth], side[depth]);
+                depth++;
+            }
+
+            if (large.evaluate() != scan(large))
+                mismatches++;
+        }
+
+        System.out.println ("Checked " + boards + " boards and " + steps + " random steps (seed " + seed + ")");
+        System.out.println ("Checked " + steps + " random steps on a " + size + "x" + size + " board, " +
+                            length + " in a row");
+        System.out.println ("Mismatches: " + mismatches);
+        if (mismatches > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Compares the incremental evaluation of a bitboard with the full scan
+     *
+     * @param   position    the bitboard
+     *
+     * @return  true if evaluate() and evalFunction() both match the scan
+     */
+    private static boolean matches (BitBoard position) {
+        int ai = position.getAI();
+        int player = position.getPlayer();
+
+        return position.evaluate() == BitBoard.evaluate(ai, player) &&
+               position.evalFunction() == BitBoard.evalFunction(ai, player) &&
+               position.evalFunction() == terms(ai, player);
+    }
+
+    /**
+     * Computes the static evaluation function term by term, branching on the
+     * pieces of each line:
+     * f(n) = (pAI + 2cAI + oAI) - (3dPlayer + pPlayer);
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return  the value BitBoard.evalFunction() has to return
+     */
+    private static int terms (int ai, int player) {
+        int pAI = 0;
+        int oAI = 0;
+        int dPlayer = 0;
+        int pPlayer = 0;
+
+        for (int line : BitBoard.LINES) {
+            int AIPcs = ai & line;
+            int playerPcs = player & line;
+
+            // line not yet blocked by the opponent
+            if (playerPcs == 0 && AIPcs != 0)
+                pAI += 1;
+            else if (AIPcs == 0 && playerPcs != 0) {
+                pPlayer += 1;
+                // one piece short of a Player win
+                if (Integer.bitCount(playerPcs) == TicTacToe.SIZE - 1)
+                    dPlayer += 1;
+            }
+        }
+
+        int cAI = Integer.bitCount(ai & BitBoard.CORNERS);
+
+        if ((ai & BitBoard.LEFT_CORNERS) == BitBoard.LEFT_CORNERS)
+            oAI += 1;
+        if ((ai & BitBoard.RIGHT_CORNERS) == BitBoard.RIGHT_CORNERS)
+            oAI += 1;
+
+        return (pAI + 2 * cAI + oAI) - (3 * dPlayer + pPlayer);
+    }
+
+    /**
+     * Evaluates a grid board from scratch, scanning every window and corner
+     *
+     * @param   board   the board
+     *
+     * @return  the value GridBoard.evaluate() has to return
+     */
+    private static int scan (GridBoard board) {
+        LineTable table = board.getTable();
+        int last = board.getSize() - 1;
+        int score = 0;
+
+        for (int line = 0; line < table.getLineCount(); line++) {
+            int ai = 0, player = 0;
+
+            for (int cell : table.getLine(line))
+                if (board.get(cell) == GridBoard.AI)
+                    ai++;
+                else if (board.get(cell) == GridBoard.PLAYER)
+                    player++;
+
+            if (ai == board.getLength())
+                return Integer.MAX_VALUE;
+            else if (player == board.getLength())
+                return Integer.MIN_VALUE;
+            else if (player == 0 && ai != 0)
+                score += 1;
+            else if (ai == 0 && player != 0)
+                score -= player == board.getLength() - 1 ? 4 : 1;
+        }
+
+        int[] corners = {0, last, last * (last + 1), last * (last + 2)};
+        for (int corner : corners)
+            if (board.get(corner) == GridBoard.AI)
+                score += 2;
+        if (board.get(corners[0]) == GridBoard.AI && board.get(corners[3]) == GridBoard.AI)
+            score += 1;
+        if (board.get(corners[1]) == GridBoard.AI && board.get(corners[2]) == GridBoard.AI)
+            score += 1;
+
+        return score;
+    }
+}
@@ -0,0 +1,474 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Headless server hosting many human versus AI games over TCP, without the
+ * JavaFX View and Controller. A single thread runs a non-blocking selector over
+ * every connection and owns the session table; AI moves are searched on a
+ * worker pool through the thread-safe Engine and handed back to the selector
+ * thread. A connection can host any number of sessions, each with its own
+ * behavior level, and sessions idle for longer than the timeout are dropped.
+ *
+ * Line protocol (ASCII, one request or reply per '\n' terminated line), where
+ * session is a number chosen by the client, unique on its connection:
+ *
+ *   NEW session level AIFirst   starts (or restarts) a game, AIFirst 1 or 0
+ *   MOVE session cell           plays the Player's move, cell = row * 3 + col
+ *   END session                 ends a game
+ *
+ *   OK session cell status      reply to NEW and MOVE with the AI's move (-1 for
+ *                               none) and the status of the game: PLAY, WIN (the
+ *                               AI won), LOSS (the AI lost or resigned) or DRAW
+ *   BYE session                 reply to END, or sent when a session expires
+ *   ERR session reason          the request was rejected
+ *
+ * Usage: java GameServer [port] [idle timeout in seconds] [threads]
+ */
+public class GameServer {
+    /**
+     * Default port of the server
+     */
+    public static final int PORT = 7777;
+    /**
+     * Longest request line accepted, longer lines close the connection
+     */
+    public static final int MAX_LINE = 64;
+    /**
+     * How often idle sessions are looked for, in milliseconds
+     */
+    private static final long SWEEP_INTERVAL = 1000;
+    /**
+     * Selector over the server socket and every connection
+     */
+    private Selector selector;
+    /**
+     * Listening socket
+     */
+    private ServerSocketChannel server;
+    /**
+     * Threads the AI moves are searched on
+     */
+    private ExecutorService workers;
+    /**
+     * Engine of each behavior level, shared by all sessions
+     */
+    private Engine[] engines = new Engine[TicTacToe.LEVELS];
+    /**
+     * Replies finished by workers, sent by the selector thread
+     */
+    private Queue<Runnable> finished = new ConcurrentLinkedQueue<> ();
+    /**
+     * Open connections, each holding its part of the session table
+     */
+    private Set<Connection> connections = new HashSet<> ();
+    /**
+     * Time after which a session without requests is dropped, in nanoseconds
+     */
+    private long idleTimeout;
+    /**
+     * Number of sessions currently hosted
+     */
+    private int sessionCount;
+
+    /**
+     * A game hosted by the server, only used on the selector thread
+     */
+    private static class Session {
+        /**
+         * Number chosen by the client
+         */
+        int id;
+        /**
+         * Engine of the session's behavior level
+         */
+        Engine engine;
+        /**
+         * Current position of the game
+         */
+        GameState state;
+        /**
+         * Indicator if the AI resigned a lost position
+         */
+        boolean resigned;
+        /**
+         * Indicator if an AI move is being searched
+         */
+        boolean busy;
+        /**
+         * Time of the last request
+         */
+        long lastActive;
+    }
+
+    /**
+     * A client connection, only used on the selector thread
+     */
+    private static class Connection {
+        /**
+         * Socket of the client
+         */
+        SocketChannel channel;
+        /**
+         * Bytes read but not yet parsed
+         */
+        ByteBuffer in = ByteBuffer.allocate(4096);
+        /**
+         * Replies not yet written
+         */
+        Deque<ByteBuffer> out = new ArrayDeque<> ();
+        /**
+         * Sessions of the connection by their number
+         */
+        Map<Integer, Session> sessions = new HashMap<> ();
+        /**
+         * Indicator if the connection has been closed
+         */
+        boolean closed;
+    }
+
+    public static void main (String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+        long idleSeconds = args.length > 1 ? Long.parseLong(args[1]) : 60;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        GameServer gameServer = new GameServer (new InetSocketAddress (port), idleSeconds, threads);
+
+        System.out.println ("Serving on port " + port + ", idle timeout " + idleSeconds + " s, " + threads + " thread(s)");
+        gameServer.run();
+    }
+
+    /**
+     * Opens the server socket
+     *
+     * @param   address     address to listen on
+     * @param   idleSeconds time after which a session without requests is dropped
+     * @param   threads     number of threads to search AI moves on
+     *
+     * @throws IOException if the socket cannot be opened
+     */
+    public GameServer (InetSocketAddress address, long idleSeconds, int threads) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        workers = Executors.newFixedThreadPool(threads);
+        idleTimeout = idleSeconds * 1000000000L;
+        for (int level = 0; level < engines.length; level++)
+            engines[level] = new Engine (level);
+    }
+
+    /**
+     * Serves clients until the thread is interrupted
+     *
+     * @throws IOException if the selector fails
+     */
+    public void run () throws IOException {
+        long nextSweep = System.nanoTime () + SWEEP_INTERVAL * 1000000;
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                selector.select(SWEEP_INTERVAL);
+
+                for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext();) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable())
+                        accept();
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable())
+                            read(connection);
+                        if (key.isValid() && key.isWritable())
+                            write(key, connection);
+                    }
+                }
+
+                // replies of the AI moves searched meanwhile
+                for (Runnable reply; (reply = finished.poll()) != null;)
+                    reply.run();
+
+                if (System.nanoTime () >= nextSweep) {
+                    sweep();
+                    nextSweep = System.nanoTime () + SWEEP_INTERVAL * 1000000;
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            selector.close();
+            server.close();
+        }
+    }
+
+    /**
+     * Accepts a pending client
+     *
+     * @throws IOException if the selector fails
+     */
+    private void accept () throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+
+        Connection connection = new Connection ();
+        connection.channel = channel;
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, connection);
+        connections.add(connection);
+    }
+
+    /**
+     * Reads from a connection and handles every complete request line
+     *
+     * @param   connection  the connection
+     */
+    private void read (Connection connection) {
+        try {
+            if (connection.channel.read(connection.in) < 0) {
+                close(connection);
+                return;
+            }
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+
+        ByteBuffer in = connection.in;
+        int start = 0;
+
+        for (int i = 0; i < in.position(); i++)
+            if (in.get(i) == '\n') {
+                handle(connection, new String (in.array(), start, i - start, StandardCharsets.US_ASCII).trim());
+                start = i + 1;
+            }
+
+        if (connection.closed)
+            return;
+        // keep the incomplete line for the next read
+        in.limit(in.position()).position(start);
+        in.compact();
+        if (in.position() > MAX_LINE)
+            close(connection);
+    }
+
+    /**
+     * Handles a request line
+     *
+     * @param   connection  connection the line was read from
+     * @param   line        the request without its line terminator
+     */
+    private void handle (Connection connection, String line) {
+        String[] parts = line.split(" ");
+        int id;
+
+        try {
+            id = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            send(connection, "ERR -1 bad request");
+            return;
+        }
+
+        Session session = connection.sessions.get(id);
+        if (session != null && session.busy) {
+            send(connection, "ERR " + id + " busy");
+            return;
+        }
+
+        try {
+            switch (parts[0]) {
+                case "NEW":
+                    int level = Integer.parseInt(parts[2]);
+                    if (level < 0 || level >= engines.length) {
+                        send(connection, "ERR " + id + " no level " + level);
+                        return;
+                    }
+                    if (session == null) {
+                        session = new Session ();
+                        session.id = id;
+                        connection.sessions.put(id, session);
+                        sessionCount++;
+                    }
+                    session.engine = engines[level];
+                    session.state = GameState.empty(parts[3].equals("1"));
+                    session.resigned = false;
+                    session.lastActive = System.nanoTime ();
+                    if (session.state.isAITurn())
+                        think(connection, session);
+                    else
+                        reply(connection, session, -1);
+                    break;
+                case "MOVE":
+                    int cell = Integer.parseInt(parts[2]);
+                    if (session == null) {
+                        send(connection, "ERR " + id + " no session");
+                        return;
+                    }
+                    session.lastActive = System.nanoTime ();
+                    if (session.resigned || session.state.isOver() || session.state.isAITurn() ||
+                        cell < 0 || cell >= BitBoard.CELLS || (session.state.getEmpty() & 1 << cell) == 0) {
+                        send(connection, "ERR " + id + " illegal move");
+                        return;
+                    }
+                    session.state = session.state.play(cell);
+                    if (session.state.isOver())
+                        reply(connection, session, -1);
+                    else
+                        think(connection, session);
+                    break;
+                case "END":
+                    if (session != null) {
+                        connection.sessions.remove(id);
+                        sessionCount--;
+                    }
+                    send(connection, "BYE " + id);
+                    break;
+                default:
+                    send(connection, "ERR " + id + " bad request");
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            send(connection, "ERR " + id + " bad request");
+        }
+    }
+
+    /**
+     * Searches the AI's move of a session on the worker pool and replies once it is found
+     *
+     * @param   connection  connection of the session
+     * @param   session     session with the AI to move
+     */
+    private void think (Connection connection, Session session) {
+        GameState state = session.state;
+        Engine engine = session.engine;
+
+        session.busy = true;
+        workers.execute(() -> {
+            int cell = engine.pickMove(state);
+
+            finished.add(() -> {
+                session.busy = false;
+                if (connection.closed || connection.sessions.get(session.id) != session)
+                    return;
+                if (cell == -1)
+                    // level 3 plays no move in a lost position
+                    session.resigned = true;
+                else
+                    session.state = state.play(cell);
+                reply(connection, session, cell);
+            });
+            selector.wakeup();
+        });
+    }
+
+    /**
+     * Sends the reply to a NEW or MOVE request
+     *
+     * @param   connection  connection of the session
+     * @param   session     the session
+     * @param   cell        the AI's move, -1 if none
+     */
+    private void reply (Connection connection, Session session, int cell) {
+        GameState state = session.state;
+        String status = session.resigned || state.getWinner() < 0 ? "LOSS" :
+                        state.getWinner() > 0 ? "WIN" : state.isOver() ? "DRAW" : "PLAY";
+
+        send(connection, "OK " + session.id + " " + cell + " " + status);
+    }
+
+    /**
+     * Queues a line to a connection and writes as much as the socket takes
+     *
+     * @param   connection  the connection
+     * @param   line        the line without its terminator
+     */
+    private void send (Connection connection, String line) {
+        if (connection.closed)
+            return;
+
+        connection.out.add(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII)));
+        write(connection.channel.keyFor(selector), connection);
+    }
+
+    /**
+     * Writes queued replies, waiting for the socket to become writable if it is full
+     *
+     * @param   key         selection key of the connection
+     * @param   connection  the connection
+     */
+    private void write (SelectionKey key, Connection connection) {
+        try {
+            while (!connection.out.isEmpty()) {
+                ByteBuffer buffer = connection.out.peek();
+                connection.channel.write(buffer);
+                if (buffer.hasRemaining())
+                    break;
+                connection.out.poll();
+            }
+        } catch (IOException e) {
+            close(connection);
+            return;
+        }
+
+        key.interestOps(connection.out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Closes a connection and drops its sessions
+     *
+     * @param   connection  the connection
+     */
+    private void close (Connection connection) {
+        if (connection.closed)
+            return;
+
+        connection.closed = true;
+        sessionCount -= connection.sessions.size();
+        connection.sessions.clear();
+        connections.remove(connection);
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+
+    /**
+     * Drops the sessions that have been idle for longer than the timeout
+     */
+    private void sweep () {
+        long now = System.nanoTime ();
+
+        for (Connection connection : new ArrayList<> (connections)) {
+            List<Session> expired = new ArrayList<> ();
+
+            for (Session session : connection.sessions.values())
+                if (!session.busy && now - session.lastActive > idleTimeout)
+                    expired.add(session);
+
+            // sending can close the connection, so the sessions are removed first
+            for (Session session : expired) {
+                connection.sessions.remove(session.id);
+                sessionCount--;
+            }
+            for (Session session : expired)
+                send(connection, "BYE " + session.id);
+        }
+    }
+
+    /**
+     * Gets the number of sessions hosted, only meaningful on the selector thread
+     *
+     * @return the number of sessions
+     */
+    public int getSessionCount () {
+        return sessionCount;
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * Immutable TicTacToe position: the tiles of the AI and of the Player as
+ * bitmasks (bit row * SIZE + col) and who had the first move. Moves return a
+ * new position, so a position can be shared freely between threads.
+ */
+public final class GameState {
+    /**
+     * Tiles occupied by the AI
+     */
+    private final int ai;
+    /**
+     * Tiles occupied by the Player
+     */
+    private final int player;
+    /**
+     * Indicator if the AI had the first move (plays X)
+     */
+    private final boolean AIFirstMove;
+
+    /**
+     * Creates a position
+     *
+     * @param   ai          AI bitmask
+     * @param   player      Player bitmask
+     * @param   AIFirstMove indicator if the AI had the first move
+     *
+     * @throws IllegalArgumentException if the masks overlap, leave the board or
+     *         do not alternate moves from the first player
+     */
+    public GameState (int ai, int player, boolean AIFirstMove) {
+        int first = Integer.bitCount(AIFirstMove ? ai : player);
+        int second = Integer.bitCount(AIFirstMove ? player : ai);
+
+        if ((ai & player) != 0 || ((ai | player) & ~BitBoard.FULL) != 0)
+            throw new IllegalArgumentException ("Not a board: AI " + ai + ", Player " + player);
+        if (first != second && first != second + 1)
+            throw new IllegalArgumentException ("Moves do not alternate: AI " + ai + ", Player " + player);
+
+        this.ai = ai;
+        this.player = player;
+        this.AIFirstMove = AIFirstMove;
+    }
+
+    /**
+     * Creates the empty position
+     *
+     * @param   AIFirstMove     indicator if the AI has the first move
+     *
+     * @return  the empty board
+     */
+    public static GameState empty (boolean AIFirstMove) {
+        return new GameState (0, 0, AIFirstMove);
+    }
+
+    /**
+     * Creates a position from a board of X, O and EMPTY tiles
+     *
+     * @param   board       SIZE by SIZE board
+     * @param   AIFirstMove indicator if the AI had the first move (plays X)
+     *
+     * @return  the position on the board
+     */
+    public static GameState of (char[][] board, boolean AIFirstMove) {
+        BitBoard bits = new BitBoard ();
+
+        bits.load(board, getAISymbol(AIFirstMove), getPlayerSymbol(AIFirstMove));
+        return new GameState (bits.getAI(), bits.getPlayer(), AIFirstMove);
+    }
+
+    /**
+     * Gets the tiles of the AI
+     *
+     * @return the AI bitmask
+     */
+    public int getAI () {
+        return ai;
+    }
+
+    /**
+     * Gets the tiles of the Player
+     *
+     * @return the Player bitmask
+     */
+    public int getPlayer () {
+        return player;
+    }
+
+    /**
+     * Gets who had the first move
+     *
+     * @return true if the AI had the first move
+     */
+    public boolean isAIFirstMove () {
+        return AIFirstMove;
+    }
+
+    /**
+     * Gets whose turn it is
+     *
+     * @return true if the AI is to move
+     */
+    public boolean isAITurn () {
+        return Integer.bitCount(ai) + (AIFirstMove ? 0 : 1) == Integer.bitCount(player);
+    }
+
+    /**
+     * Gets the empty tiles
+     *
+     * @return bitmask of the empty tiles
+     */
+    public int getEmpty () {
+        return ~(ai | player) & BitBoard.FULL;
+    }
+
+    /**
+     * Gets the result of the position
+     *
+     * @return 1 if the AI has won, -1 if the Player has won, otherwise 0
+     */
+    public int getWinner () {
+        return BitBoard.hasWon(ai) ? 1 : BitBoard.hasWon(player) ? -1 : 0;
+    }
+
+    /**
+     * Checks if the game is over
+     *
+     * @return true if a side has won or the board is full
+     */
+    public boolean isOver () {
+        return getWinner() != 0 || getEmpty() == 0;
+    }
+
+    /**
+     * Plays a move of the side to move
+     *
+     * @param   cell    index of the empty tile (row * SIZE + col)
+     *
+     * @return  the position after the move
+     *
+     * @throws IllegalArgumentException if the tile is not empty or the game is over
+     */
+    public GameState play (int cell) {
+        if (cell < 0 || cell >= BitBoard.CELLS || (getEmpty() & 1 << cell) == 0 || isOver())
+            throw new IllegalArgumentException ("Not a legal move: " + cell);
+
+        return isAITurn() ? new GameState (ai | 1 << cell, player, AIFirstMove)
+                          : new GameState (ai, player | 1 << cell, AIFirstMove);
+    }
+
+    /**
+     * Gets the board of the position
+     *
+     * @return a new SIZE by SIZE board of X, O and EMPTY tiles
+     */
+    public char[][] toBoard () {
+        char[][] board = new char[TicTacToe.SIZE][TicTacToe.SIZE];
+
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            board[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] =
+                (ai & 1 << cell) != 0 ? getAISymbol(AIFirstMove) :
+                (player & 1 << cell) != 0 ? getPlayerSymbol(AIFirstMove) : TicTacToe.EMPTY;
+
+        return board;
+    }
+
+    /**
+     * Gets the symbol of the AI, X for the first move
+     *
+     * @param   AIFirstMove     indicator if the AI had the first move
+     *
+     * @return  the AI's piece
+     */
+    public static char getAISymbol (boolean AIFirstMove) {
+        return AIFirstMove ? 'X' : 'O';
+    }
+
+    /**
+     * Gets the symbol of the Player, X for the first move
+     *
+     * @param   AIFirstMove     indicator if the AI had the first move
+     *
+     * @return  the Player's piece
+     */
+    public static char getPlayerSymbol (boolean AIFirstMove) {
+        return AIFirstMove ? 'O' : 'X';
+    }
+
+    @Override
+    public boolean equals (Object other) {
+        if (!(other instanceof GameState))
+            return false;
+
+        GameState state = (GameState) other;
+        return ai == state.ai && player == state.player && AIFirstMove == state.AIFirstMove;
+    }
+
+    @Override
+    public int hashCode () {
+        return (ai << BitBoard.CELLS | player) << 1 | (AIFirstMove ? 1 : 0);
+    }
+
+    @Override
+    public String toString () {
+        StringBuilder text = new StringBuilder ();
+
+        for (char[] row : toBoard())
+            text.append(row).append('/');
+
+        return text.substring(0, text.length() - 1);
+    }
+}
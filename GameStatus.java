@@ -0,0 +1,22 @@
+/**
+ * Status of a TicTacToe game, kept by TicTacToe.play() from the lines through
+ * the tile just played so the board does not have to be scanned for it.
+ */
+public enum GameStatus {
+    /**
+     * Neither side has won and there are empty tiles left
+     */
+    IN_PROGRESS,
+    /**
+     * The AI has filled a line
+     */
+    AI_WIN,
+    /**
+     * The Player has filled a line
+     */
+    PLAYER_WIN,
+    /**
+     * The board is full without a winner
+     */
+    DRAW
+}
@@ -0,0 +1,442 @@
+import java.util.*;
+
+/**
+ * Board of any size N x N where k pieces in a row win, for the searches that
+ * are not bound to the 3x3 bitboard. Keeps the same incremental state as
+ * BitBoard, read from the windows of the shared LineTable: per window piece
+ * counts, the number of windows each side has filled, the evaluation and the
+ * Zobrist hash. The empty tiles are kept in row-major order in a list that
+ * play() unlinks a tile from and undo() links it back into (play and undo
+ * always come in last in, first out order), so a move costs O(k) for the
+ * windows through its tile and nothing proportional to the board.
+ *
+ * With N = k = 3 the evaluation is the one of BitBoard and TicTacToe.
+ */
+public class GridBoard {
+    /**
+     * Content of an empty tile
+     */
+    public static final byte EMPTY = 0;
+    /**
+     * Content of a tile holding an AI piece
+     */
+    public static final byte AI = 1;
+    /**
+     * Content of a tile holding a Player piece
+     */
+    public static final byte PLAYER = 2;
+
+    /**
+     * Shared windows and keys of the board
+     */
+    private final LineTable table;
+    /**
+     * Row and column length of the board
+     */
+    private final int size;
+    /**
+     * Number of pieces in a row that win
+     */
+    private final int length;
+    /**
+     * Content of each tile: EMPTY, AI or PLAYER
+     */
+    private final byte[] tiles;
+    /**
+     * Next empty tile in row-major order, size * size for the end of the list
+     */
+    private final int[] next;
+    /**
+     * Previous empty tile in row-major order, size * size for the head of the list
+     */
+    private final int[] previous;
+    /**
+     * Number of pieces on the tiles around each tile (one step in any direction)
+     */
+    private final int[] neighbors;
+    /**
+     * Number of AI pieces in each window, updated on every play() and undo()
+     */
+    private final int[] aiCounts;
+    /**
+     * Number of Player pieces in each window, updated on every play() and undo()
+     */
+    private final int[] playerCounts;
+    /**
+     * Contribution of a window to evalFunction() by its number of AI pieces a
+     * and Player pieces p, at index a * (length + 1) + p: pAI - (3dPlayer + pPlayer)
+     */
+    private final int[] lineScores;
+    /**
+     * Number of windows filled by the AI
+     */
+    private int aiLines;
+    /**
+     * Number of windows filled by the Player
+     */
+    private int playerLines;
+    /**
+     * Value of evalFunction() for the current pieces
+     */
+    private int score;
+    /**
+     * Zobrist hash of the pieces on the board
+     */
+    private long hash;
+    /**
+     * Number of empty tiles
+     */
+    private int empty;
+
+    /**
+     * Creates an empty board
+     *
+     * @param   size    row and column length of the board
+     * @param   length  number of pieces in a row that win
+     *
+     * @throws IllegalArgumentException if the length is not between 1 and the size
+     */
+    public GridBoard (int size, int length) {
+        int cells = size * size;
+
+        this.table = LineTable.of(size, length);
+        this.size = size;
+        this.length = length;
+        tiles = new byte[cells];
+        next = new int[cells + 1];
+        previous = new int[cells + 1];
+        neighbors = new int[cells];
+        aiCounts = new int[table.getLineCount()];
+        playerCounts = new int[table.getLineCount()];
+
+        lineScores = new int[(length + 1) * (length + 1)];
+        for (int a = 0; a <= length; a++)
+            for (int p = 0; p <= length; p++) {
+                int score = 0;
+                if (p == 0 && a != 0)
+                    score = 1;
+                else if (a == 0 && p != 0)
+                    score = p == length - 1 ? -4 : -1;
+                lineScores[a * (length + 1) + p] = score;
+            }
+
+        clear();
+    }
+
+    /**
+     * Empties every tile
+     */
+    public void clear () {
+        int cells = tiles.length;
+
+        Arrays.fill(tiles, EMPTY);
+        Arrays.fill(neighbors, 0);
+        Arrays.fill(aiCounts, 0);
+        Arrays.fill(playerCounts, 0);
+        aiLines = playerLines = score = 0;
+        hash = 0;
+        empty = cells;
+
+        // circular list through the head at index cells
+        for (int cell = 0; cell <= cells; cell++) {
+            next[cell] = cell == cells ? 0 : cell + 1;
+            previous[cell] = cell == 0 ? cells : cell - 1;
+        }
+    }
+
+    /**
+     * Gets the shared line table of the board
+     *
+     * @return the windows and keys of the board
+     */
+    public LineTable getTable () {
+        return table;
+    }
+
+    /**
+     * Gets the row and column length of the board
+     *
+     * @return the size of the board
+     */
+    public int getSize () {
+        return size;
+    }
+
+    /**
+     * Gets the number of pieces in a row that win
+     *
+     * @return the win length
+     */
+    public int getLength () {
+        return length;
+    }
+
+    /**
+     * Gets the number of tiles of the board
+     *
+     * @return size * size
+     */
+    public int getCells () {
+        return tiles.length;
+    }
+
+    /**
+     * Gets the content of a tile
+     *
+     * @param   cell    index of the tile (row * size + col)
+     *
+     * @return  EMPTY, AI or PLAYER
+     */
+    public byte get (int cell) {
+        return tiles[cell];
+    }
+
+    /**
+     * Gets the Zobrist hash of the pieces on the board. The side to move is
+     * not part of the hash, XOR in LineTable.getAIToMove() when the AI is to move.
+     *
+     * @return the hash of the current board state
+     */
+    public long getHash () {
+        return hash;
+    }
+
+    /**
+     * Gets the number of empty tiles left
+     *
+     * @return the number of empty tiles left
+     */
+    public int getMovesLeft () {
+        return empty;
+    }
+
+    /**
+     * Gets the number of pieces on the board
+     *
+     * @return the number of occupied tiles
+     */
+    public int getPieces () {
+        return tiles.length - empty;
+    }
+
+    /**
+     * Gets the first empty tile in row-major order. Together with nextEmpty()
+     * visits the empty tiles without scanning the occupied ones.
+     *
+     * @return the index of the tile, getCells() if the board is full
+     */
+    public int firstEmpty () {
+        return next[tiles.length];
+    }
+
+    /**
+     * Gets the empty tile after an empty tile in row-major order
+     *
+     * @param   cell    index of an empty tile
+     *
+     * @return  the index of the next empty tile, getCells() if there is none
+     */
+    public int nextEmpty (int cell) {
+        return next[cell];
+    }
+
+    /**
+     * Gets the number of pieces of a side in a window
+     *
+     * @param   line    index of the window in the line table
+     * @param   isAI    true for the AI, false for the Player
+     *
+     * @return  the number of pieces of the side in the window
+     */
+    public int getCount (int line, boolean isAI) {
+        return isAI ? aiCounts[line] : playerCounts[line];
+    }
+
+    /**
+     * Checks if a piece is next to a tile, in any of the 8 directions
+     *
+     * @param   cell    index of the tile (row * size + col)
+     *
+     * @return  true if a tile around it is occupied
+     */
+    public boolean hasNeighbor (int cell) {
+        return neighbors[cell] != 0;
+    }
+
+    /**
+     * Occupies an empty tile
+     *
+     * @param   cell    index of the tile (row * size + col)
+     * @param   isAI    true if the AI occupies the tile, false if the Player does
+     */
+    public void play (int cell, boolean isAI) {
+        tiles[cell] = isAI ? AI : PLAYER;
+        hash ^= table.getKey(cell, isAI);
+        if (isAI)
+            score += cornerScore(cell);
+        count(cell, isAI, 1);
+        touch(cell, 1);
+
+        // unlink from the empty tiles
+        next[previous[cell]] = next[cell];
+        previous[next[cell]] = previous[cell];
+        empty--;
+    }
+
+    /**
+     * Empties the tile of the last piece played through play()
+     *
+     * @param   cell    index of the tile (row * size + col)
+     * @param   isAI    true if the AI occupied the tile, false if the Player did
+     */
+    public void undo (int cell, boolean isAI) {
+        // the neighbors of the tile in the list are the ones it was unlinked from
+        next[previous[cell]] = cell;
+        previous[next[cell]] = cell;
+        empty++;
+
+        touch(cell, -1);
+        count(cell, isAI, -1);
+        if (isAI)
+            score -= cornerScore(cell);
+        hash ^= table.getKey(cell, isAI);
+        tiles[cell] = EMPTY;
+    }
+
+    /**
+     * Adds a piece to or removes it from the counts of the windows through its
+     * tile, updating the filled windows and the window terms of the score
+     *
+     * @param   cell    index of the tile (row * size + col)
+     * @param   isAI    true if the piece is the AI's, false if the Player's
+     * @param   delta   1 when the piece is played, -1 when it is undone
+     */
+    private void count (int cell, boolean isAI, int delta) {
+        int[] counts = isAI ? aiCounts : playerCounts;
+
+        for (int line : table.getCellLines(cell)) {
+            score -= lineScores[aiCounts[line] * (length + 1) + playerCounts[line]];
+            if (counts[line] == length)
+                filled(isAI, -1);
+            counts[line] += delta;
+            if (counts[line] == length)
+                filled(isAI, 1);
+            score += lineScores[aiCounts[line] * (length + 1) + playerCounts[line]];
+        }
+    }
+
+    /**
+     * Updates the number of windows filled by a side
+     *
+     * @param   isAI    true for the AI, false for the Player
+     * @param   delta   change of the number of filled windows
+     */
+    private void filled (boolean isAI, int delta) {
+        if (isAI)
+            aiLines += delta;
+        else
+            playerLines += delta;
+    }
+
+    /**
+     * Updates the neighbor counts of the tiles around a tile
+     *
+     * @param   cell    index of the tile (row * size + col)
+     * @param   delta   1 when a piece is played on it, -1 when it is undone
+     */
+    private void touch (int cell, int delta) {
+        int row = cell / size;
+        int col = cell % size;
+
+        for (int r = Math.max(0, row - 1); r <= Math.min(size - 1, row + 1); r++)
+            for (int c = Math.max(0, col - 1); c <= Math.min(size - 1, col + 1); c++)
+                if (r != row || c != col)
+                    neighbors[r * size + c] += delta;
+    }
+
+    /**
+     * Gets the corner terms of the score (2cAI + oAI) that an AI piece adds,
+     * with the piece already on the board when played and still on it when undone
+     *
+     * @param   cell    index of the tile (row * size + col)
+     *
+     * @return  2 for a corner plus 1 if it completes a pair of opposite corners, 0 otherwise
+     */
+    private int cornerScore (int cell) {
+        int last = size - 1;
+        int row = cell / size;
+        int col = cell % size;
+
+        if ((row != 0 && row != last) || (col != 0 && col != last))
+            return 0;
+
+        return tiles[(last - row) * size + last - col] == AI ? 3 : 2;
+    }
+
+    /**
+     * Checks if a side has filled a window
+     *
+     * @param   isAI    true for the AI, false for the Player
+     *
+     * @return  true if the side has k pieces in a row
+     */
+    public boolean hasWon (boolean isAI) {
+        return (isAI ? aiLines : playerLines) != 0;
+    }
+
+    /**
+     * Same as BitBoard.evaluate() for any board: a filled window decides the
+     * game, otherwise the static evaluation function scores the board. The
+     * windows are only scanned if both sides have filled one.
+     *
+     * @return the maximum integer value if the AI won, the minimum integer value
+     *         if the Player won, otherwise the score of evalFunction()
+     */
+    public int evaluate () {
+        if (aiLines == 0 && playerLines == 0)
+            return score;
+        if (playerLines == 0)
+            return Integer.MAX_VALUE;
+        if (aiLines == 0)
+            return Integer.MIN_VALUE;
+
+        // the first filled window in scan order decides, like BitBoard.evaluate(ai, player)
+        for (int line = 0; line < aiCounts.length; line++) {
+            if (aiCounts[line] == length)
+                return Integer.MAX_VALUE;
+            else if (playerCounts[line] == length)
+                return Integer.MIN_VALUE;
+        }
+
+        return score;
+    }
+
+    /**
+     * Same as BitBoard.evalFunction() with windows of k tiles for the lines:
+     * f(n) = (pAI + 2cAI + oAI) - (3dPlayer + pPlayer);
+     *
+     * @return an integer representing the evaluation of the board state
+     */
+    public int evalFunction () {
+        return score;
+    }
+
+    /**
+     * Gets the board as text, one row per line, with X for the AI, O for the
+     * Player and - for an empty tile
+     *
+     * @return the rows of the board
+     */
+    @Override
+    public String toString () {
+        StringBuilder text = new StringBuilder ();
+
+        for (int cell = 0; cell < tiles.length; cell++) {
+            text.append(tiles[cell] == AI ? 'X' : tiles[cell] == PLAYER ? 'O' : '-');
+            if (cell % size == size - 1)
+                text.append(System.lineSeparator());
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,67 @@
+import java.io.*;
+
+/**
+ * Headless games on an N x N board with k in a row to win, the GridSearch
+ * playing both sides with a time budget per move. The first move alternates
+ * between the sides. Prints the final board of every game, the results and
+ * the nodes searched per second. A tablebase file of the board, if given, is
+ * probed by both sides.
+ *
+ * Usage: java GridMatch [size] [length] [milliseconds per move] [games] [tablebase]
+ */
+public class GridMatch {
+    public static void main (String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long millis = args.length > 2 ? Long.parseLong(args[2]) : 100;
+        int games = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        GridBoard board = new GridBoard (size, length);
+        GridSearch ai = new GridSearch ();
+        GridSearch player = new GridSearch ();
+        int aiWins = 0, draws = 0, playerWins = 0;
+        long nodes = 0, nanos = 0, moves = 0, depths = 0;
+
+        ai.setSearchLimits(millis, 0);
+        player.setSearchLimits(millis, 0);
+        if (args.length > 4) {
+            Tablebase tablebase = Tablebase.map(args[4]);
+            ai.setTablebase(tablebase);
+            player.setTablebase(tablebase);
+        }
+
+        for (int game = 0; game < games; game++) {
+            boolean isAI = game % 2 == 0;
+
+            board.clear();
+            while (board.getMovesLeft() > 0 && !board.hasWon(true) && !board.hasWon(false)) {
+                GridSearch search = isAI ? ai : player;
+                long start = System.nanoTime ();
+                int cell = search.search(board, isAI);
+
+                nanos += System.nanoTime () - start;
+                nodes += search.getNodes();
+                depths += search.getCompletedDepth();
+                moves++;
+                board.play(cell, isAI);
+                isAI = !isAI;
+            }
+
+            String result = board.hasWon(true) ? "X wins" : board.hasWon(false) ? "O wins" : "Draw";
+            if (board.hasWon(true))
+                aiWins++;
+            else if (board.hasWon(false))
+                playerWins++;
+            else
+                draws++;
+
+            System.out.println ("Game " + (game + 1) + ", " + (game % 2 == 0 ? "X" : "O") + " first: " + result);
+            System.out.print (board);
+        }
+
+        System.out.println (size + "x" + size + " board, " + length + " in a row, " + millis + " ms per move");
+        System.out.println ("X wins " + aiWins + ", draws " + draws + ", O wins " + playerWins);
+        System.out.printf ("Nodes per second: %.0f, mean depth %.1f%n",
+                           nodes / Math.max(1e-9, nanos / 1e9), (double) depths / Math.max(1, moves));
+    }
+}
@@ -0,0 +1,537 @@
+/**
+ * Alpha-beta search for a GridBoard of any size and win length, the
+ * counterpart of the level 4 search of TicTacToe for boards other than 3x3:
+ * negamax with null windows, a transposition table and wins and losses scored
+ * by distance to the end of the game. Without a budget the whole game tree is
+ * searched and the move is the first best move in row-major order, as on the
+ * 3x3 board; with a time or node budget the search deepens one ply at a time
+ * and keeps the move of the last completed depth.
+ *
+ * Boards of NEAR_SIZE and more only search the empty tiles next to a piece,
+ * as a move far from every piece is neither a threat nor a block. On these
+ * boards the ThreatSearch runs first, and a forced win or a forced block it
+ * finds is played without the alpha-beta search.
+ *
+ * With a Tablebase of the board set, the search stops at every position the
+ * table holds and scores it by its result and distance to the result, so a
+ * position inside the table is played perfectly without a search and a
+ * drawn one scores 0.
+ */
+public class GridSearch {
+    /**
+     * Memory budget of the transposition table in bytes
+     */
+    public static final long TABLE_BYTES = 1 << 24;
+    /**
+     * Boards at least this large only search tiles next to a piece
+     */
+    public static final int NEAR_SIZE = 6;
+    /**
+     * Largest number of tiles of a searched board, as the transposition table
+     * keeps moves in 8 bits
+     */
+    public static final int MAX_CELLS = 0xFE;
+
+    /**
+     * Scores of the searched positions
+     */
+    private TranspositionTable table = new TranspositionTable (TABLE_BYTES);
+    /**
+     * Board being searched
+     */
+    private GridBoard position;
+    /**
+     * Solved positions to stop the search at, null for none
+     */
+    private Tablebase tablebase;
+    /**
+     * Indicator if the tablebase is of the board being searched
+     */
+    private boolean probing;
+    /**
+     * Forced moves of the boards of NEAR_SIZE and more
+     */
+    private ThreatSearch threats = new ThreatSearch ();
+    /**
+     * Move list of each ply, by the number of pieces on the board
+     */
+    private int[][] moves = new int[0][];
+    /**
+     * Time budget per search in milliseconds, 0 for no limit
+     */
+    private long timeLimit;
+    /**
+     * Node budget per search, 0 for no limit
+     */
+    private long nodeLimit;
+    /**
+     * Time at which the current search runs out of time
+     */
+    private long deadline;
+    /**
+     * Number of nodes searched by the last search
+     */
+    private long nodes;
+    /**
+     * Deepest depth completed by the last search
+     */
+    private int completedDepth;
+    /**
+     * Score of the move picked by the last search, from the side that moved
+     */
+    private int score;
+    /**
+     * Indicator if the current depth can be stopped by the budget or a halt
+     */
+    private boolean budgeted;
+    /**
+     * Indicator if the current depth ran out of budget and is discarded
+     */
+    private boolean aborted;
+    /**
+     * Indicator if setHalted() stopped the search
+     */
+    private volatile boolean halted;
+
+    /**
+     * Sets the budget of every search. With neither limit the whole game tree
+     * is searched, which is only practical on small boards.
+     *
+     * @param   timeLimit   time budget per search in milliseconds, 0 for no limit
+     * @param   nodeLimit   node budget per search, 0 for no limit
+     */
+    public void setSearchLimits (long timeLimit, long nodeLimit) {
+        this.timeLimit = timeLimit;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Sets the tablebase the search stops at. It is only probed on boards of
+     * its size and win length.
+     *
+     * @param   tablebase   the solved positions, null to always search
+     */
+    public void setTablebase (Tablebase tablebase) {
+        this.tablebase = tablebase == null ? null : tablebase.view();
+    }
+
+    /**
+     * Stops the running search or lets the next one run. Can be called from
+     * any thread; a halted search returns the move of its last completed depth,
+     * the first depth is always completed.
+     *
+     * @param   halted  true to stop the running search, false before searching again
+     */
+    public void setHalted (boolean halted) {
+        this.halted = halted;
+    }
+
+    /**
+     * Gets the number of nodes searched by the last search
+     *
+     * @return the node count
+     */
+    public long getNodes () {
+        return nodes;
+    }
+
+    /**
+     * Gets the deepest depth completed by the last search
+     *
+     * @return the depth in plies
+     */
+    public int getCompletedDepth () {
+        return completedDepth;
+    }
+
+    /**
+     * Gets the score of the move picked by the last search, from the side that
+     * moved: Integer.MAX_VALUE - n for a win with n pieces on the board,
+     * -Integer.MAX_VALUE + n for a loss, otherwise the evaluation. A win
+     * forced by the threat search scores as a win right after the move, and a
+     * forced block the evaluation of the board after it.
+     *
+     * @return the score of the picked move
+     */
+    public int getScore () {
+        return score;
+    }
+
+    /**
+     * Picks the move of a side. The board is searched in place and left as it
+     * was found.
+     *
+     * @param   board   the board, with no side having won and at least one empty tile
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the index of the chosen tile (row * size + col), -1 if none
+     *
+     * @throws IllegalArgumentException if the board has more than MAX_CELLS tiles
+     */
+    public int search (GridBoard board, boolean isAI) {
+        if (board.getCells() > MAX_CELLS)
+            throw new IllegalArgumentException ("No search for boards of more than " + MAX_CELLS + " tiles");
+
+        if (moves.length != board.getCells() + 1)
+            moves = new int[board.getCells() + 1][board.getCells()];
+        position = board;
+        probing = tablebase != null && tablebase.fits(board);
+        nodes = 0;
+        completedDepth = 0;
+        aborted = false;
+        deadline = System.nanoTime() + timeLimit * 1000000;
+        table.newSearch();
+
+        int[] order = new int[board.getCells()];
+        int[] scores = new int[board.getCells()];
+        int count = generate(order, -1);
+        int bestMove = -1;
+
+        if (count == 0 || board.hasWon(true) || board.hasWon(false))
+            return -1;
+        if (probing && tablebase.probe(board, isAI))
+            return tableMove(isAI);
+        if (board.getSize() >= NEAR_SIZE) {
+            int forced = threats.find(board, isAI);
+
+            if (forced != -1) {
+                nodes = threats.getNodes();
+                board.play(forced, isAI);
+                score = relative(threats.isWinning() ? terminalScore(isAI ? Integer.MAX_VALUE : Integer.MIN_VALUE)
+                                                     : board.evaluate(), isAI);
+                board.undo(forced, isAI);
+                return forced;
+            }
+        }
+
+        if (timeLimit == 0 && nodeLimit == 0 && !halted) {
+            // without limits only a halt stops the search
+            budgeted = true;
+            int move = searchRoot(board.getMovesLeft(), order, count, scores, isAI);
+            budgeted = false;
+
+            if (!aborted) {
+                completedDepth = board.getMovesLeft();
+                score = scores[move];
+                return move;
+            }
+            // halted: the deepening below completes its first depth and stops
+            aborted = false;
+        }
+
+        for (int depth = 1; depth <= board.getMovesLeft() && !aborted; depth++) {
+            // the first depth always completes, even when halted, so there is a move to play
+            budgeted = depth > 1;
+            int move = searchRoot(depth, order, count, scores, isAI);
+
+            if (!aborted) {
+                bestMove = move;
+                score = scores[move];
+                completedDepth = depth;
+
+                // search the best scored moves of this depth first in the next one
+                for (int i = 1; i < count; i++)
+                    for (int j = i; j > 0 && scores[order[j]] > scores[order[j - 1]]; j--) {
+                        int temp = order[j];
+                        order[j] = order[j - 1];
+                        order[j - 1] = temp;
+                    }
+                // deeper searches cannot find a faster win
+                if (score >= Integer.MAX_VALUE - board.getCells())
+                    break;
+            }
+        }
+
+        budgeted = false;
+        return bestMove;
+    }
+
+    /**
+     * Picks the move of a position the tablebase holds from the entries of
+     * its moves: the fastest win, a draw or the slowest loss, of equal moves
+     * the first in row-major order
+     *
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the index of the best tile
+     */
+    private int tableMove (boolean isAI) {
+        int end = position.getCells();
+        int best = -Integer.MAX_VALUE;
+        int move = -1;
+
+        completedDepth = tablebase.getDistance();
+        for (int cell = position.firstEmpty(); cell != end; cell = position.nextEmpty(cell)) {
+            nodes += 1;
+            position.play(cell, isAI);
+            // every position after one the table holds is held too
+            tablebase.probe(position, !isAI);
+            int eval = -tableScore(!isAI);
+            position.undo(cell, isAI);
+
+            if (move == -1 || eval > best) {
+                best = eval;
+                move = cell;
+            }
+        }
+
+        score = best;
+        return move;
+    }
+
+    /**
+     * Searches the root moves. The first move is searched with the full window,
+     * every other move first with a null window that only tells if it beats
+     * the best move so far, so only a strictly better move replaces it.
+     *
+     * @param   depth   remaining depth at the root
+     * @param   order   root moves in the order to search them
+     * @param   count   number of root moves
+     * @param   scores  receives the score of each root move, exact for moves that
+     *                  became the best move and an upper bound for the others
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the index of the best tile
+     */
+    private int searchRoot (int depth, int[] order, int count, int[] scores, boolean isAI) {
+        int best = -Integer.MAX_VALUE;
+        int move = order[0];
+
+        for (int i = 0; i < count && !aborted; i++) {
+            int cell = order[i];
+            int eval;
+
+            position.play(cell, isAI);
+            if (i == 0)
+                eval = -negamax(depth - 1, -Integer.MAX_VALUE, Integer.MAX_VALUE, !isAI);
+            else {
+                eval = -negamax(depth - 1, -best - 1, -best, !isAI);
+                if (eval > best)
+                    eval = -negamax(depth - 1, -Integer.MAX_VALUE, -best, !isAI);
+            }
+            position.undo(cell, isAI);
+
+            scores[cell] = eval;
+            if ((i == 0 || eval > best) && !aborted) {
+                best = eval;
+                move = cell;
+            }
+        }
+
+        return move;
+    }
+
+    /**
+     * Scores the board from the side of the player to move, searching every
+     * move after the first with a null window and re-searching only the moves
+     * that land inside (alpha, beta). Scores stored in the transposition table
+     * are kept from the AI's side.
+     *
+     * @param   depth   the remaining depth to search
+     * @param   alpha   the score the player to move is already assured of
+     * @param   beta    the score the opponent is already assured of
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the score of the board state for the player to move
+     */
+    private int negamax (int depth, int alpha, int beta, boolean isAI) {
+        nodes += 1;
+        // out of budget, the caller discards this depth
+        if (budgeted && (aborted || outOfBudget()))
+            return 0;
+
+        int score = position.evaluate();
+
+        // no more moves left or AI or PLAYER has won
+        if (depth == 0 || position.getMovesLeft() == 0 ||
+            score == Integer.MAX_VALUE || score == Integer.MIN_VALUE)
+            return relative(terminalScore(score), isAI);
+        if (probing && tablebase.probe(position, isAI))
+            return tableScore(isAI);
+
+        long key = isAI ? position.getHash() ^ position.getTable().getAIToMove() : position.getHash();
+        int alphaOrig = alpha;
+        int hashMove = -1;
+
+        // reuse the score of a position searched before, within the current window
+        if (table.probe(key)) {
+            if (table.getMove() != -1 && table.getMove() < position.getCells() &&
+                position.get(table.getMove()) == GridBoard.EMPTY)
+                hashMove = table.getMove();
+
+            if (table.getDepth() >= depth) {
+                int stored = relative(table.getScore(), isAI);
+                int bound = table.getBound();
+
+                // the bound is kept from the AI's side, it flips for the Player
+                if (bound == TranspositionTable.EXACT)
+                    return stored;
+                else if ((bound == TranspositionTable.LOWER) == isAI)
+                    alpha = Math.max(alpha, stored);
+                else
+                    beta = Math.min(beta, stored);
+
+                if (beta <= alpha)
+                    return stored;
+            }
+        }
+
+        int[] list = moves[position.getPieces()];
+        int count = generate(list, hashMove);
+        int eval = -Integer.MAX_VALUE;
+        int bestMove = -1;
+
+        for (int i = 0; i < count; i++) {
+            int cell = list[i];
+            int childEval;
+
+            position.play(cell, isAI);
+            if (i == 0)
+                childEval = -negamax(depth - 1, -beta, -alpha, !isAI);
+            else {
+                // null window: only prove the move is no better than alpha
+                childEval = -negamax(depth - 1, -alpha - 1, -alpha, !isAI);
+                if (childEval > alpha && childEval < beta)
+                    childEval = -negamax(depth - 1, -beta, -childEval, !isAI);
+            }
+            position.undo(cell, isAI);
+
+            if (childEval > eval || bestMove == -1) {
+                eval = childEval;
+                bestMove = cell;
+            }
+            alpha = Math.max(alpha, childEval);
+
+            if (beta <= alpha)
+                break;
+        }
+
+        // scores of an unfinished search are not cached
+        if (!aborted) {
+            int bound = eval <= alphaOrig ? TranspositionTable.UPPER
+                      : eval >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+
+            if (!isAI && bound != TranspositionTable.EXACT)
+                bound = bound == TranspositionTable.UPPER ? TranspositionTable.LOWER : TranspositionTable.UPPER;
+            table.store(key, absolute(eval, isAI), depth, bound, bestMove);
+        }
+
+        return eval;
+    }
+
+    /**
+     * Lists the moves of a node: the hash move first, then the empty tiles in
+     * row-major order. On boards of NEAR_SIZE and more only the tiles next to
+     * a piece are listed, all of them if there is no such tile.
+     *
+     * @param   list        receives the moves
+     * @param   hashMove    move stored in the transposition table, -1 if none
+     *
+     * @return  the number of moves
+     */
+    private int generate (int[] list, int hashMove) {
+        int end = position.getCells();
+        boolean near = position.getSize() >= NEAR_SIZE && position.getPieces() > 0;
+        int count = 0;
+
+        if (hashMove != -1)
+            list[count++] = hashMove;
+        for (int cell = position.firstEmpty(); cell != end; cell = position.nextEmpty(cell))
+            if (cell != hashMove && (!near || position.hasNeighbor(cell)))
+                list[count++] = cell;
+
+        if (count == 0 && near)
+            for (int cell = position.firstEmpty(); cell != end; cell = position.nextEmpty(cell))
+                list[count++] = cell;
+
+        return count;
+    }
+
+    /**
+     * Gives a win or loss its score by how soon it happens: a win on a board
+     * with n pieces scores Integer.MAX_VALUE - n and a loss Integer.MIN_VALUE + n,
+     * so the search prefers the fastest win and the slowest loss
+     *
+     * @param   score   score of the board from position.evaluate()
+     *
+     * @return  the score of the board from the AI's side
+     */
+    private int terminalScore (int score) {
+        if (score == Integer.MAX_VALUE)
+            return score - position.getPieces();
+        if (score == Integer.MIN_VALUE)
+            return score + position.getPieces();
+
+        return score;
+    }
+
+    /**
+     * Scores the position of the last successful tablebase probe like the
+     * search scores the end of the game it leads to: a win or loss by the
+     * number of pieces on the board when it happens, a draw 0
+     *
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the score of the position for the player to move
+     */
+    private int tableScore (boolean isAI) {
+        int end = position.getPieces() + tablebase.getDistance();
+
+        switch (tablebase.getResult()) {
+            case Tablebase.WIN:
+                return relative(isAI ? Integer.MAX_VALUE - end : Integer.MIN_VALUE + end, isAI);
+            case Tablebase.LOSS:
+                return relative(isAI ? Integer.MIN_VALUE + end : Integer.MAX_VALUE - end, isAI);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Converts a score from the AI's side to the side of the player to move.
+     * Integer.MIN_VALUE (Player won) becomes -Integer.MAX_VALUE so it can be negated.
+     *
+     * @param   score   score from the AI's side
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the score from the side of the player to move
+     */
+    private static int relative (int score, boolean isAI) {
+        if (score == Integer.MIN_VALUE)
+            score = -Integer.MAX_VALUE;
+
+        return isAI ? score : -score;
+    }
+
+    /**
+     * Converts a score from the side of the player to move back to the AI's side
+     *
+     * @param   score   score from the side of the player to move
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the score from the AI's side
+     */
+    private static int absolute (int score, boolean isAI) {
+        if (!isAI)
+            score = -score;
+
+        return score == -Integer.MAX_VALUE ? Integer.MIN_VALUE : score;
+    }
+
+    /**
+     * Checks if the current depth has run out of nodes or time, or has been
+     * halted by another thread. The clock is only read every 1024 nodes.
+     *
+     * @return true if the search has to stop, otherwise false
+     */
+    private boolean outOfBudget () {
+        if (halted)
+            aborted = true;
+        else if (nodeLimit > 0 && nodes >= nodeLimit)
+            aborted = true;
+        else if (timeLimit > 0 && (nodes & 1023) == 0 && System.nanoTime() >= deadline)
+            aborted = true;
+
+        return aborted;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Check of GridSearch.setHalted() on searches without limits: a search of the
+ * whole game tree is halted from another thread after a delay, and has to
+ * return a legal move from its completed first depth without waiting for the
+ * whole tree, and the next search has to run in full again.
+ *
+ * Usage: java HaltCheck [size] [length] [milliseconds before the halt]
+ */
+public class HaltCheck {
+    public static void main (String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long delay = args.length > 2 ? Long.parseLong(args[2]) : 200;
+        int failures = 0;
+
+        GridBoard board = new GridBoard (size, length);
+        board.play(size / 2 * size + size / 2, true);
+
+        GridSearch search = new GridSearch ();
+        int[] result = new int[1];
+        Thread thread = new Thread (() -> result[0] = search.search(board, false));
+        long start = System.nanoTime ();
+
+        thread.start();
+        Thread.sleep(delay);
+        search.setHalted(true);
+        thread.join();
+        long millis = (System.nanoTime () - start) / 1000000;
+
+        if (result[0] == -1 || board.get(result[0]) != GridBoard.EMPTY) {
+            System.out.println ("Halted search returned no legal move: " + result[0]);
+            failures++;
+        }
+        if (search.getCompletedDepth() != 1) {
+            System.out.println ("Halted search completed depth " + search.getCompletedDepth() + ", expected 1");
+            failures++;
+        }
+        if (millis > delay + 1000) {
+            System.out.println ("Halted search took " + millis + " ms to return");
+            failures++;
+        }
+
+        // the next search runs in full again
+        GridBoard small = new GridBoard (3, 3);
+        GridSearch fresh = new GridSearch ();
+        search.setHalted(false);
+        if (search.search(small, true) != fresh.search(small, true) ||
+            search.getCompletedDepth() != small.getCells()) {
+            System.out.println ("Search after the halt did not search the whole tree");
+            failures++;
+        }
+
+        System.out.println ("Halted a " + size + "x" + size + " search without limits after " + delay +
+                            " ms, it returned after " + millis + " ms");
+        System.out.println ("Failures: " + failures);
+        if (failures > 0)
+            System.exit(1);
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Helper threads of the SearchMode.LAZY_SMP search. While the calling thread
+ * searches a position, every helper runs its own iterative deepening search of
+ * the same position on a view of the caller's transposition table. Helpers
+ * start at different depths and root moves, so they fill the table with
+ * entries the calling thread would only reach later; there is no other
+ * communication between the threads.
+ *
+ * The calling thread's search decides the move, so the move played is the
+ * same for any number of helpers.
+ */
+public class LazySmpSearch {
+    /**
+     * Threads the helpers run on
+     */
+    private ExecutorService pool;
+    /**
+     * Search copy of the game of each helper
+     */
+    private TicTacToe[] helpers;
+    /**
+     * Running search of each helper
+     */
+    private Future<?>[] running;
+    /**
+     * System.nanoTime() value when the helpers were started
+     */
+    private long started;
+
+    /**
+     * Creates the helpers and their threads
+     *
+     * @param   threads     number of helper threads
+     */
+    public LazySmpSearch (int threads) {
+        pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread (task, "lazy-smp-helper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        helpers = new TicTacToe[threads];
+        running = new Future<?>[threads];
+
+        for (int i = 0; i < threads; i++)
+            helpers[i] = new TicTacToe ();
+    }
+
+    /**
+     * Gets the number of helper threads
+     *
+     * @return the number of helpers
+     */
+    public int getThreads () {
+        return helpers.length;
+    }
+
+    /**
+     * Stops the helper threads once they are idle
+     */
+    public void shutdown () {
+        pool.shutdown();
+    }
+
+    /**
+     * Starts every helper on the board of a game
+     *
+     * @param   game    the game about to be searched on the calling thread
+     */
+    public void start (TicTacToe game) {
+        started = System.nanoTime ();
+        for (int i = 0; i < helpers.length; i++) {
+            TicTacToe helper = helpers[i];
+            int id = i;
+
+            helper.copyGame(game);
+            helper.setTable(game.getTable().view());
+            helper.resetStats();
+            helper.setHalted(false);
+            running[i] = pool.submit(() -> helper.helpSearch(id));
+        }
+    }
+
+    /**
+     * Stops every helper and waits until they have left their search
+     *
+     * @return the nodes, cutoffs and table hits of all helpers together and
+     *         the deepest ply any of them reached
+     */
+    public SearchStats stop () {
+        long nodes = 0, cutoffs = 0, hits = 0;
+        int maxDepth = 0;
+        int level = 0;
+
+        for (TicTacToe helper : helpers)
+            helper.setHalted(true);
+
+        for (int i = 0; i < helpers.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException ("Lazy SMP helper failed", e.getCause());
+            }
+            nodes += helpers[i].getNodes();
+            cutoffs += helpers[i].getCutoffs();
+            // each start() gives the helper a new view, counting hits from 0
+            hits += helpers[i].getTable().getHits();
+            maxDepth = Math.max(maxDepth, helpers[i].getMaxDepth());
+            level = helpers[i].getAILevel();
+        }
+
+        return new SearchStats (level, nodes, maxDepth, cutoffs, hits, System.nanoTime () - started);
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Winning lines of an N x N board where k pieces in a row win: every window of
+ * k consecutive tiles along a row, column or diagonal, together with the
+ * windows through each tile and the Zobrist keys of the tiles. A table is
+ * built once per (N, k) by of() and shared by every board and search of that
+ * geometry, so playing a piece only visits the windows through its tile, at
+ * most 4k of them, without ever scanning the board.
+ *
+ * A table is never changed once it is built, so it can be read from any
+ * number of threads.
+ */
+public class LineTable {
+    /**
+     * Tables built so far, keyed by size << 16 | length
+     */
+    private static final Map<Integer, LineTable> TABLES = new ConcurrentHashMap<> ();
+
+    /**
+     * Row and column length of the board
+     */
+    private final int size;
+    /**
+     * Number of pieces in a row that win
+     */
+    private final int length;
+    /**
+     * Tiles (row * size + col) of every window, in scan order: rows, columns,
+     * left diagonals, right diagonals, each from the top left
+     */
+    private final int[][] lines;
+    /**
+     * Indexes into lines of the windows through each tile, in ascending order
+     */
+    private final int[][] cellLines;
+    /**
+     * Zobrist keys of the AI pieces, one per tile
+     */
+    private final long[] aiKeys;
+    /**
+     * Zobrist keys of the Player pieces, one per tile
+     */
+    private final long[] playerKeys;
+    /**
+     * Zobrist key toggled in when the AI is the side to move
+     */
+    private final long aiToMove;
+
+    /**
+     * Builds the table of a board
+     *
+     * @param   size    row and column length of the board
+     * @param   length  number of pieces in a row that win
+     */
+    private LineTable (int size, int length) {
+        List<int[]> windows = new ArrayList<> ();
+        int cells = size * size;
+
+        this.size = size;
+        this.length = length;
+
+        // rows, columns, left (down right) and right (down left) diagonals
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] direction : directions)
+            for (int row = 0; row < size; row++)
+                for (int col = 0; col < size; col++) {
+                    int lastRow = row + direction[0] * (length - 1);
+                    int lastCol = col + direction[1] * (length - 1);
+
+                    if (lastRow >= size || lastCol < 0 || lastCol >= size)
+                        continue;
+
+                    int[] window = new int[length];
+                    for (int i = 0; i < length; i++)
+                        window[i] = (row + direction[0] * i) * size + col + direction[1] * i;
+                    windows.add(window);
+                }
+        lines = windows.toArray(new int[windows.size()][]);
+
+        int[] counts = new int[cells];
+        for (int[] window : lines)
+            for (int cell : window)
+                counts[cell]++;
+        cellLines = new int[cells][];
+        for (int cell = 0; cell < cells; cell++)
+            cellLines[cell] = new int[counts[cell]];
+        Arrays.fill(counts, 0);
+        for (int l = 0; l < lines.length; l++)
+            for (int cell : lines[l])
+                cellLines[cell][counts[cell]++] = l;
+
+        // fixed seed per board so hashes are reproducible between runs
+        Random rand = new Random (0x7AC7AC70EL ^ ((long) size << 16 | length));
+        aiKeys = new long[cells];
+        playerKeys = new long[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            aiKeys[cell] = rand.nextLong();
+            playerKeys[cell] = rand.nextLong();
+        }
+        aiToMove = rand.nextLong();
+    }
+
+    /**
+     * Gets the shared table of a board, building it on first use
+     *
+     * @param   size    row and column length of the board
+     * @param   length  number of pieces in a row that win
+     *
+     * @return  the table of the board
+     *
+     * @throws IllegalArgumentException if the length is not between 1 and the size
+     */
+    public static LineTable of (int size, int length) {
+        if (length < 1 || length > size || size > Short.MAX_VALUE)
+            throw new IllegalArgumentException ("No " + length + " in a row on a board of size " + size);
+
+        return TABLES.computeIfAbsent(size << 16 | length, key -> new LineTable (size, length));
+    }
+
+    /**
+     * Gets the row and column length of the board
+     *
+     * @return the size of the board
+     */
+    public int getSize () {
+        return size;
+    }
+
+    /**
+     * Gets the number of pieces in a row that win
+     *
+     * @return the win length
+     */
+    public int getLength () {
+        return length;
+    }
+
+    /**
+     * Gets the number of tiles of the board
+     *
+     * @return size * size
+     */
+    public int getCells () {
+        return size * size;
+    }
+
+    /**
+     * Gets the number of windows
+     *
+     * @return the number of winning lines
+     */
+    public int getLineCount () {
+        return lines.length;
+    }
+
+    /**
+     * Gets the tiles of a window. The array is shared and must not be changed.
+     *
+     * @param   line    index of the window
+     *
+     * @return  the tiles (row * size + col) of the window
+     */
+    public int[] getLine (int line) {
+        return lines[line];
+    }
+
+    /**
+     * Gets the windows through a tile. The array is shared and must not be changed.
+     *
+     * @param   cell    index of the tile (row * size + col)
+     *
+     * @return  the indexes of the windows through the tile, in ascending order
+     */
+    public int[] getCellLines (int cell) {
+        return cellLines[cell];
+    }
+
+    /**
+     * Gets the Zobrist key of a piece
+     *
+     * @param   cell    index of the tile (row * size + col)
+     * @param   isAI    true for an AI piece, false for a Player piece
+     *
+     * @return  the key of the piece on the tile
+     */
+    public long getKey (int cell, boolean isAI) {
+        return isAI ? aiKeys[cell] : playerKeys[cell];
+    }
+
+    /**
+     * Gets the Zobrist key toggled in when the AI is the side to move
+     *
+     * @return the side to move key
+     */
+    public long getAIToMove () {
+        return aiToMove;
+    }
+}
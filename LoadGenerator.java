@@ -0,0 +1,301 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Load generator for the GameServer. Spreads the sessions over a number of
+ * connections on a single selector thread; every session keeps one request in
+ * flight, playing random legal Player moves and starting a new game (with the
+ * first move alternating) whenever one ends. Reports the AI replies received
+ * per second and the reply latency percentiles.
+ *
+ * Usage: java LoadGenerator [host] [port] [sessions] [connections] [seconds] [level]
+ */
+public class LoadGenerator {
+    /**
+     * A game played by the generator
+     */
+    private static class Session {
+        /**
+         * Number of the session on its connection
+         */
+        int id;
+        /**
+         * Position of the game, from the side of the server's AI
+         */
+        GameState state;
+        /**
+         * Indicator if the AI had the first move of the current game
+         */
+        boolean AIFirst;
+        /**
+         * Time the request in flight was sent
+         */
+        long sent;
+    }
+
+    /**
+     * A connection to the server
+     */
+    private static class Connection {
+        /**
+         * Socket to the server
+         */
+        SocketChannel channel;
+        /**
+         * Bytes read but not yet parsed
+         */
+        ByteBuffer in = ByteBuffer.allocate(1 << 16);
+        /**
+         * Requests not yet written
+         */
+        ByteBuffer out;
+        /**
+         * Sessions of the connection by their number
+         */
+        Session[] sessions;
+    }
+
+    /**
+     * Behavior level of every session
+     */
+    private int level;
+    /**
+     * Random Player moves
+     */
+    private Random random = new Random (1);
+    /**
+     * Latencies of the replies in nanoseconds, valid up to count
+     */
+    private long[] latencies = new long[1 << 20];
+    /**
+     * Number of replies received while measuring
+     */
+    private int count;
+    /**
+     * Number of ERR replies received
+     */
+    private long errors;
+    /**
+     * Indicator if replies are being measured (after the warm-up)
+     */
+    private boolean measuring;
+
+    public static void main (String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.PORT;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        int level = args.length > 5 ? Integer.parseInt(args[5]) : 3;
+
+        new LoadGenerator (level).run(new InetSocketAddress (host, port), sessions, connections, seconds);
+    }
+
+    /**
+     * Creates a load generator
+     *
+     * @param   level   behavior level of every session
+     */
+    public LoadGenerator (int level) {
+        this.level = level;
+    }
+
+    /**
+     * Connects, plays for a while and prints the report. The first second is
+     * a warm-up and is not measured.
+     *
+     * @param   address     address of the server
+     * @param   sessions    number of concurrent sessions
+     * @param   connections number of connections to spread the sessions over
+     * @param   seconds     measured duration
+     *
+     * @throws IOException if a connection fails
+     */
+    public void run (InetSocketAddress address, int sessions, int connections, int seconds) throws IOException {
+        Selector selector = Selector.open();
+        List<Connection> open = new ArrayList<> ();
+
+        for (int c = 0; c < connections; c++) {
+            Connection connection = new Connection ();
+            int size = sessions / connections + (c < sessions % connections ? 1 : 0);
+
+            connection.channel = SocketChannel.open(address);
+            connection.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connection.channel.configureBlocking(false);
+            connection.channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, connection);
+            // room for one request of every session
+            connection.out = ByteBuffer.allocate(Math.max(1 << 16, size * 32));
+            connection.sessions = new Session[size];
+            for (int i = 0; i < size; i++) {
+                Session session = new Session ();
+                session.id = i;
+                session.AIFirst = (i & 1) == 0;
+                connection.sessions[i] = session;
+                start(connection, session);
+            }
+            open.add(connection);
+        }
+
+        long warmUp = System.nanoTime () + 1000000000L;
+        long end = warmUp + seconds * 1000000000L;
+        long start = 0;
+
+        for (long now = System.nanoTime (); now < end; now = System.nanoTime ()) {
+            if (!measuring && now >= warmUp) {
+                measuring = true;
+                start = now;
+            }
+
+            selector.select(100);
+            for (Iterator<SelectionKey> keys = selector.selectedKeys().iterator(); keys.hasNext();) {
+                SelectionKey key = keys.next();
+                Connection connection = (Connection) key.attachment();
+                keys.remove();
+
+                if (key.isReadable())
+                    read(connection);
+                if (key.isWritable() || connection.out.position() > 0)
+                    flush(connection);
+                key.interestOps(connection.out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                                                              : SelectionKey.OP_READ);
+            }
+        }
+
+        double elapsed = (System.nanoTime () - start) / 1e9;
+        for (Connection connection : open)
+            connection.channel.close();
+        selector.close();
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.println ("Level " + level + ", " + sessions + " sessions on " + connections + " connection(s), " +
+                            seconds + " s");
+        System.out.printf ("Moves per second: %.0f%n", count / elapsed);
+        System.out.printf ("Reply latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                           percentile(sorted, 50) / 1e6, percentile(sorted, 99) / 1e6,
+                           percentile(sorted, 99.9) / 1e6, count == 0 ? 0 : sorted[count - 1] / 1e6);
+        System.out.println ("Errors: " + errors);
+    }
+
+    /**
+     * Starts a new game on a session, alternating the first move
+     *
+     * @param   connection  connection of the session
+     * @param   session     the session
+     */
+    private void start (Connection connection, Session session) {
+        session.AIFirst = !session.AIFirst;
+        session.state = GameState.empty(session.AIFirst);
+        request(connection, session, "NEW " + session.id + " " + level + " " + (session.AIFirst ? 1 : 0));
+    }
+
+    /**
+     * Queues a request of a session
+     *
+     * @param   connection  connection of the session
+     * @param   session     the session
+     * @param   line        the request without its terminator
+     */
+    private void request (Connection connection, Session session, String line) {
+        session.sent = System.nanoTime ();
+        connection.out.put((line + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Writes the queued requests of a connection, as much as the socket takes
+     *
+     * @param   connection  the connection
+     *
+     * @throws IOException if the connection fails
+     */
+    private void flush (Connection connection) throws IOException {
+        connection.out.flip();
+        connection.channel.write(connection.out);
+        connection.out.compact();
+    }
+
+    /**
+     * Reads from a connection and answers every complete reply line
+     *
+     * @param   connection  the connection
+     *
+     * @throws IOException if the connection fails or the server closed it
+     */
+    private void read (Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0)
+            throw new EOFException ("Server closed the connection");
+
+        ByteBuffer in = connection.in;
+        int start = 0;
+
+        for (int i = 0; i < in.position(); i++)
+            if (in.get(i) == '\n') {
+                answer(connection, new String (in.array(), start, i - start, StandardCharsets.US_ASCII));
+                start = i + 1;
+            }
+
+        in.limit(in.position()).position(start);
+        in.compact();
+    }
+
+    /**
+     * Records a reply and sends the next request of its session
+     *
+     * @param   connection  connection the reply was read from
+     * @param   line        the reply without its terminator
+     */
+    private void answer (Connection connection, String line) {
+        String[] parts = line.split(" ");
+        int id = Integer.parseInt(parts[1]);
+        Session session = id >= 0 && id < connection.sessions.length ? connection.sessions[id] : null;
+
+        if (parts[0].equals("ERR"))
+            errors++;
+        if (session == null)
+            return;
+
+        if (measuring && parts[0].equals("OK")) {
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = System.nanoTime () - session.sent;
+        }
+
+        if (!parts[0].equals("OK") || !parts[3].equals("PLAY")) {
+            // game over, expired or rejected: play a new game
+            start(connection, session);
+            return;
+        }
+
+        int cell = Integer.parseInt(parts[2]);
+        if (cell != -1)
+            session.state = session.state.play(cell);
+
+        // random legal Player move
+        int empty = session.state.getEmpty();
+        for (int skip = random.nextInt(Integer.bitCount(empty)); skip > 0; skip--)
+            empty &= empty - 1;
+        int move = Integer.numberOfTrailingZeros(empty);
+
+        session.state = session.state.play(move);
+        request(connection, session, "MOVE " + id + " " + move);
+    }
+
+    /**
+     * Gets a percentile of sorted values
+     *
+     * @param   sorted      values in ascending order
+     * @param   percent     the percentile
+     *
+     * @return  the value below which the given percent of the values lie, 0 if there are none
+     */
+    private static long percentile (long[] sorted, double percent) {
+        if (sorted.length == 0)
+            return 0;
+
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percent / 100 * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,513 @@
+import java.lang.invoke.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Monte Carlo tree search of behavior level 5: UCT selection with a
+ * configurable exploration constant, expansion of every move of a node at
+ * once and random playouts to the end of the game. It needs no evaluation
+ * function, and it plays stronger the more playouts it is given.
+ *
+ * The search runs on the calling thread plus threads - 1 pool threads, either
+ * tree-parallel (all threads grow one shared tree, and a thread passing a node
+ * counts its visit before the playout's result is in, a virtual loss that
+ * steers the other threads to other moves) or root-parallel (every thread grows
+ * its own tree and their root visit counts are added up at the end).
+ *
+ * Trees are preallocated arrays of nodes and the playouts work on bitmasks,
+ * so a search allocates nothing per playout. One search runs at a time.
+ */
+public class MonteCarloSearch {
+    /**
+     * Default exploration constant of UCT, the theoretical sqrt(2)
+     */
+    public static final double EXPLORATION = Math.sqrt(2);
+    /**
+     * Playouts of a search when the game sets no search limits
+     */
+    public static final long DEFAULT_PLAYOUTS = 20000;
+    /**
+     * Default number of nodes of each tree
+     */
+    public static final int CAPACITY = 1 << 18;
+    /**
+     * First child value of a node whose moves are not expanded yet
+     */
+    private static final int UNEXPANDED = -1;
+    /**
+     * First child value of a node being expanded by another thread
+     */
+    private static final int EXPANDING = -2;
+    /**
+     * First child value of a node left a leaf because its tree is full
+     */
+    private static final int LEAF = -3;
+    /**
+     * Atomic access to the int arrays of the trees shared between threads
+     */
+    private static final VarHandle INT = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * Search tree of preallocated nodes, node 0 is the root
+     */
+    private static class Tree {
+        /**
+         * Index of the first child of each node (children are consecutive),
+         * or UNEXPANDED, EXPANDING or LEAF
+         */
+        int[] children;
+        /**
+         * Number of children of each node
+         */
+        byte[] counts;
+        /**
+         * Tile played to reach each node
+         */
+        byte[] moves;
+        /**
+         * Number of playouts through each node, counted when a thread passes it
+         */
+        int[] visits;
+        /**
+         * Results of the finished playouts through each node for the side that
+         * played its move: 2 per win and 1 per draw
+         */
+        int[] rewards;
+        /**
+         * Number of nodes in use
+         */
+        AtomicInteger size = new AtomicInteger ();
+
+        Tree (int capacity) {
+            children = new int[capacity];
+            counts = new byte[capacity];
+            moves = new byte[capacity];
+            visits = new int[capacity];
+            rewards = new int[capacity];
+        }
+
+        /**
+         * Empties the tree down to an unexpanded root
+         */
+        void clear () {
+            children[0] = UNEXPANDED;
+            visits[0] = 0;
+            rewards[0] = 0;
+            size.set(1);
+        }
+    }
+
+    /**
+     * State of one searching thread
+     */
+    private static class Worker {
+        /**
+         * Tree the worker grows
+         */
+        Tree tree;
+        /**
+         * Nodes from the root to the current leaf
+         */
+        int[] path = new int[BitBoard.CELLS + 1];
+        /**
+         * State of the xorshift random number generator of the playouts
+         */
+        long random;
+        /**
+         * Deepest ply below the root the worker's tree reached
+         */
+        int maxDepth;
+        /**
+         * Playouts the worker finished in the current search
+         */
+        long playouts;
+    }
+
+    /**
+     * Threads the searches run on besides the calling thread, null for one thread
+     */
+    private ExecutorService pool;
+    /**
+     * Searching threads, the first one is the calling thread
+     */
+    private Worker[] workers;
+    /**
+     * Indicator if every thread grows its own tree
+     */
+    private boolean rootParallel;
+    /**
+     * Exploration constant of UCT
+     */
+    private double exploration;
+    /**
+     * Playouts claimed from the budget by the current search
+     */
+    private AtomicLong started = new AtomicLong ();
+    /**
+     * Indicator set when the current search has to stop
+     */
+    private volatile boolean done;
+    /**
+     * Position of the current search
+     */
+    private int rootAI, rootPlayer;
+    /**
+     * Budget of the current search
+     */
+    private long playoutLimit, deadline;
+    /**
+     * Game whose halted flag stops the current search
+     */
+    private TicTacToe game;
+
+    /**
+     * Creates a search on the calling thread with the default exploration constant
+     */
+    public MonteCarloSearch () {
+        this(1, false, EXPLORATION, CAPACITY);
+    }
+
+    /**
+     * Creates a search
+     *
+     * @param   threads         number of searching threads, including the calling thread
+     * @param   rootParallel    true to grow a tree per thread, false to share one tree
+     * @param   exploration     exploration constant of UCT
+     * @param   capacity        number of nodes of each tree
+     *
+     * @throws IllegalArgumentException if there are no threads or no room for the root's moves
+     */
+    public MonteCarloSearch (int threads, boolean rootParallel, double exploration, int capacity) {
+        if (threads < 1 || capacity <= BitBoard.CELLS)
+            throw new IllegalArgumentException ("Need a thread and more than " + BitBoard.CELLS + " nodes");
+
+        this.rootParallel = rootParallel;
+        this.exploration = exploration;
+        workers = new Worker[threads];
+        Tree shared = rootParallel ? null : new Tree (capacity);
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker ();
+            workers[i].tree = rootParallel ? new Tree (capacity) : shared;
+        }
+
+        if (threads > 1)
+            pool = Executors.newFixedThreadPool(threads - 1, task -> {
+                Thread thread = new Thread (task, "mcts-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Gets the number of searching threads
+     *
+     * @return the number of threads, including the calling thread
+     */
+    public int getThreads () {
+        return workers.length;
+    }
+
+    /**
+     * Stops the pool threads once they are idle
+     */
+    public void shutdown () {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Searches a position with the AI to move until the budget runs out or the
+     * game is halted, and picks the root move visited most
+     *
+     * @param   game        game whose isHalted() stops the search early
+     * @param   ai          AI bitmask
+     * @param   player      Player bitmask
+     * @param   limit       number of playouts, 0 for no limit
+     * @param   timeLimit   wall-clock budget in milliseconds, 0 for no limit
+     * @param   seed        seed of the playouts
+     *
+     * @return  the index of the chosen tile, -1 if the board is full
+     */
+    public int search (TicTacToe game, int ai, int player, long limit, long timeLimit, long seed) {
+        if ((ai | player) == BitBoard.FULL)
+            return -1;
+
+        this.game = game;
+        rootAI = ai;
+        rootPlayer = player;
+        playoutLimit = limit;
+        deadline = timeLimit > 0 ? System.nanoTime() + timeLimit * 1000000 : Long.MAX_VALUE;
+        started.set(0);
+        done = false;
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i].tree.clear();
+            // never 0, the xorshift state would stay 0
+            workers[i].random = (seed + i) * 0x9E3779B97F4A7C15L | 1;
+            workers[i].maxDepth = 0;
+            workers[i].playouts = 0;
+        }
+
+        Future<?>[] running = new Future<?>[workers.length];
+        for (int i = 1; i < workers.length; i++) {
+            Worker worker = workers[i];
+            running[i] = pool.submit(() -> run(worker));
+        }
+        run(workers[0]);
+        done = true;
+        for (int i = 1; i < workers.length; i++) {
+            try {
+                running[i].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException ("Monte Carlo worker failed", e.getCause());
+            }
+        }
+
+        return bestMove();
+    }
+
+    /**
+     * Gets the number of playouts of the last search
+     *
+     * @return the number of playouts
+     */
+    public long getPlayouts () {
+        long playouts = 0;
+
+        for (Worker worker : workers)
+            playouts += worker.playouts;
+
+        return playouts;
+    }
+
+    /**
+     * Gets the depth the trees of the last search reached
+     *
+     * @return the deepest ply below the root of any tree
+     */
+    public int getMaxDepth () {
+        int depth = 0;
+
+        for (Worker worker : workers)
+            depth = Math.max(depth, worker.maxDepth);
+
+        return depth;
+    }
+
+    /**
+     * Runs playouts on a worker until the search is done. The calling thread
+     * runs at least one, so the root always has its moves.
+     *
+     * @param   worker  the worker
+     */
+    private void run (Worker worker) {
+        do {
+            long count = started.getAndIncrement();
+            if (count > 0 && (playoutLimit > 0 && count >= playoutLimit ||
+                              (count & 63) == 0 && System.nanoTime() >= deadline || game.isHalted())) {
+                done = true;
+                break;
+            }
+
+            iterate(worker);
+            worker.playouts++;
+        } while (!done);
+    }
+
+    /**
+     * Runs one playout: selects a path down the tree by UCT, expands its last
+     * node, plays the game out randomly and adds the result to the path
+     *
+     * @param   worker  the worker
+     */
+    private void iterate (Worker worker) {
+        Tree tree = worker.tree;
+        int[] path = worker.path;
+        int ai = rootAI;
+        int player = rootPlayer;
+        boolean isAI = true;
+        int node = 0;
+        int depth = 0;
+        // result from the AI's side: 1 win, 0 draw, -1 loss, 2 for not over yet
+        int result = 2;
+
+        INT.getAndAdd(tree.visits, 0, 1);
+        path[depth++] = 0;
+
+        while (true) {
+            int first = expand(tree, node, ai | player);
+            if (first < 0)
+                break;
+
+            node = select(tree, node, first);
+            int cell = tree.moves[node];
+            // virtual loss: the visit counts before its reward does
+            INT.getAndAdd(tree.visits, node, 1);
+            path[depth++] = node;
+
+            if (isAI)
+                ai |= 1 << cell;
+            else
+                player |= 1 << cell;
+
+            if (BitBoard.wins(isAI ? ai : player, cell)) {
+                result = isAI ? 1 : -1;
+                break;
+            }
+            if ((ai | player) == BitBoard.FULL) {
+                result = 0;
+                break;
+            }
+            isAI = !isAI;
+        }
+
+        if (result == 2)
+            result = playout(worker, ai, player, isAI);
+        worker.maxDepth = Math.max(worker.maxDepth, depth - 1);
+
+        // the move into a node at an odd depth is the AI's
+        for (int i = 1; i < depth; i++) {
+            int reward = (i % 2 == 1 ? result : -result) + 1;
+            if (reward != 0)
+                INT.getAndAdd(tree.rewards, path[i], reward);
+        }
+    }
+
+    /**
+     * Gets the children of a node, adding one child per empty tile if the node
+     * has none yet
+     *
+     * @param   tree        the tree
+     * @param   node        the node, not an ended game
+     * @param   occupied    tiles occupied in the node's position
+     *
+     * @return  the index of the first child, -1 to play out from the node
+     *          (another thread is expanding it or the tree is full)
+     */
+    private static int expand (Tree tree, int node, int occupied) {
+        int first = (int) INT.getAcquire(tree.children, node);
+
+        if (first >= 0)
+            return first;
+        if (first != UNEXPANDED || !INT.compareAndSet(tree.children, node, UNEXPANDED, EXPANDING))
+            return -1;
+
+        int empty = ~occupied & BitBoard.FULL;
+        int count = Integer.bitCount(empty);
+        int start = tree.size.getAndAdd(count);
+
+        if (start + count > tree.children.length) {
+            INT.setRelease(tree.children, node, LEAF);
+            return -1;
+        }
+
+        for (int child = start; empty != 0; empty &= empty - 1, child++) {
+            tree.children[child] = UNEXPANDED;
+            tree.moves[child] = (byte) Integer.numberOfTrailingZeros(empty);
+            tree.visits[child] = 0;
+            tree.rewards[child] = 0;
+        }
+        tree.counts[node] = (byte) count;
+        INT.setRelease(tree.children, node, start);
+
+        return start;
+    }
+
+    /**
+     * Picks the child of a node with the highest UCT value, an unvisited child first
+     *
+     * @param   tree    the tree
+     * @param   node    the expanded node
+     * @param   first   index of its first child
+     *
+     * @return  the index of the selected child
+     */
+    private int select (Tree tree, int node, int first) {
+        double log = Math.log(Math.max(1, (int) INT.getOpaque(tree.visits, node)));
+        double best = Double.NEGATIVE_INFINITY;
+        int selected = first;
+
+        for (int child = first; child < first + tree.counts[node]; child++) {
+            int visits = (int) INT.getOpaque(tree.visits, child);
+            if (visits == 0)
+                return child;
+
+            double value = (int) INT.getOpaque(tree.rewards, child) / (2.0 * visits) +
+                           exploration * Math.sqrt(log / visits);
+            if (value > best) {
+                best = value;
+                selected = child;
+            }
+        }
+
+        return selected;
+    }
+
+    /**
+     * Plays random moves until the game ends
+     *
+     * @param   worker  the worker, for its random number generator
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  1 if the AI wins, -1 if the Player wins, 0 for a draw
+     */
+    private static int playout (Worker worker, int ai, int player, boolean isAI) {
+        for (int empty = ~(ai | player) & BitBoard.FULL; empty != 0; empty = ~(ai | player) & BitBoard.FULL) {
+            long random = worker.random;
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            worker.random = random;
+
+            // random tile among the empty ones
+            for (int skip = (int) ((random >>> 32) * Integer.bitCount(empty) >>> 32); skip > 0; skip--)
+                empty &= empty - 1;
+            int cell = Integer.numberOfTrailingZeros(empty);
+
+            if (isAI) {
+                ai |= 1 << cell;
+                if (BitBoard.wins(ai, cell))
+                    return 1;
+            } else {
+                player |= 1 << cell;
+                if (BitBoard.wins(player, cell))
+                    return -1;
+            }
+            isAI = !isAI;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Gets the root move with the most visits over all trees, the lowest tile
+     * of equally visited moves
+     *
+     * @return  the index of the chosen tile
+     */
+    private int bestMove () {
+        long[] visits = new long[BitBoard.CELLS];
+        int move = -1;
+
+        for (Worker worker : workers) {
+            Tree tree = worker.tree;
+            int first = tree.children[0];
+
+            if (first >= 0)
+                for (int child = first; child < first + tree.counts[0]; child++)
+                    visits[tree.moves[child]] += tree.visits[child];
+            if (!rootParallel)
+                break;
+        }
+
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            if ((~(rootAI | rootPlayer) & 1 << cell) != 0 && (move == -1 || visits[cell] > visits[move]))
+                move = cell;
+
+        return move;
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.*;
+
+/**
+ * Orders the moves of a minimax node so the moves most likely to cause an
+ * alpha-beta cutoff are searched first: the move stored in the transposition
+ * table, then the killer moves of the ply, then the rest by history score and
+ * static tile priority (center, corners, edges).
+ */
+public class MoveOrdering {
+    /**
+     * Static priority of each tile: center 3, corners 2, edges 1
+     */
+    public static final int[] PRIOR = new int[BitBoard.CELLS];
+    /**
+     * Number of killer moves kept per ply
+     */
+    public static final int KILLERS = 2;
+    /**
+     * History score above which all history scores are halved
+     */
+    private static final int HISTORY_MAX = 1 << 20;
+
+    static {
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            if ((BitBoard.CORNERS & 1 << cell) != 0)
+                PRIOR[cell] = 2;
+            else if (cell == BitBoard.CELLS / 2)
+                PRIOR[cell] = 3;
+            else
+                PRIOR[cell] = 1;
+    }
+
+    /**
+     * Last moves that caused a cutoff at each ply, most recent first
+     */
+    private int[][] killers = new int[BitBoard.CELLS + 1][KILLERS];
+    /**
+     * Cutoffs caused by each move, weighted by remaining depth: history[side][cell]
+     * where side 1 is the AI and 0 is the Player
+     */
+    private int[][] history = new int[2][BitBoard.CELLS];
+    /**
+     * Ordered move list of each ply, reused between nodes
+     */
+    private int[][] lists = new int[BitBoard.CELLS + 1][BitBoard.CELLS];
+    /**
+     * Sort key of each move of each ply
+     */
+    private int[][] keys = new int[BitBoard.CELLS + 1][BitBoard.CELLS];
+
+    public MoveOrdering () {
+        clear();
+    }
+
+    /**
+     * Orders the moves of a node. The result is read through getMoves(ply).
+     *
+     * @param   moves       bitmask of the tiles to order
+     * @param   ply         number of pieces on the board
+     * @param   isAI        indicator if the AI is to move
+     * @param   hashMove    move stored for the position in the transposition table, -1 if none
+     *
+     * @return  the number of ordered moves
+     */
+    public int order (int moves, int ply, boolean isAI, int hashMove) {
+        int[] list = lists[ply];
+        int[] key = keys[ply];
+        int[] scores = history[isAI ? 1 : 0];
+        int count = 0;
+
+        for (; moves != 0; moves &= moves - 1) {
+            int cell = Integer.numberOfTrailingZeros(moves);
+            int score;
+
+            if (cell == hashMove)
+                score = Integer.MAX_VALUE;
+            else if (cell == killers[ply][0])
+                score = Integer.MAX_VALUE - 1;
+            else if (cell == killers[ply][1])
+                score = Integer.MAX_VALUE - 2;
+            else
+                score = (scores[cell] << 2) + PRIOR[cell];
+
+            // insertion sort, equal keys stay in row-major order
+            int i = count++;
+            for (; i > 0 && key[i - 1] < score; i--) {
+                key[i] = key[i - 1];
+                list[i] = list[i - 1];
+            }
+            key[i] = score;
+            list[i] = cell;
+        }
+
+        return count;
+    }
+
+    /**
+     * Lists the moves of a node in row-major order, the order minimax
+     * searches in without move ordering
+     *
+     * @param   moves   bitmask of the tiles to list
+     * @param   ply     number of pieces on the board
+     *
+     * @return  the number of listed moves
+     */
+    public int rowMajor (int moves, int ply) {
+        int[] list = lists[ply];
+        int count = 0;
+
+        for (; moves != 0; moves &= moves - 1)
+            list[count++] = Integer.numberOfTrailingZeros(moves);
+
+        return count;
+    }
+
+    /**
+     * Gets the move list of a ply filled by the last order() or rowMajor() call
+     *
+     * @param   ply     number of pieces on the board
+     *
+     * @return  the moves, valid up to the returned count
+     */
+    public int[] getMoves (int ply) {
+        return lists[ply];
+    }
+
+    /**
+     * Records a move that caused a cutoff as a killer of its ply and
+     * raises its history score
+     *
+     * @param   cell    index of the tile
+     * @param   ply     number of pieces on the board
+     * @param   isAI    indicator if the AI made the move
+     * @param   depth   remaining depth of the node
+     */
+    public void cutoff (int cell, int ply, boolean isAI, int depth) {
+        if (killers[ply][0] != cell) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = cell;
+        }
+
+        int[] scores = history[isAI ? 1 : 0];
+        scores[cell] += depth * depth;
+        if (scores[cell] > HISTORY_MAX)
+            for (int i = 0; i < BitBoard.CELLS; i++)
+                scores[i] >>= 1;
+    }
+
+    /**
+     * Forgets all killer moves and history scores
+     */
+    public void clear () {
+        for (int[] ply : killers)
+            Arrays.fill(ply, -1);
+        for (int[] side : history)
+            Arrays.fill(side, 0);
+    }
+}
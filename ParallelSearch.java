@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Scores the root moves of behavior levels 3 and 4 in parallel on a fork/join
+ * pool, one task per root move. Every pool thread searches on its own
+ * TicTacToe copy of the game, so it keeps its own bitboard, transposition
+ * table and move ordering between moves.
+ *
+ * The tasks share the best exact root score found so far: a task only needs
+ * to find out whether its move reaches that score, so it searches with the
+ * shared score as its lower bound.
+ */
+public class ParallelSearch {
+    /**
+     * Pool the root move tasks run on
+     */
+    private ForkJoinPool pool;
+    /**
+     * Search copy of the game used by each pool thread
+     */
+    private ThreadLocal<TicTacToe> workers = ThreadLocal.withInitial(this::newWorker);
+    /**
+     * Search copies of every pool thread, so a halt reaches the running searches
+     */
+    private Set<TicTacToe> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a parallel search over a new pool
+     *
+     * @param   parallelism     number of threads searching at the same time
+     */
+    public ParallelSearch (int parallelism) {
+        pool = new ForkJoinPool (parallelism);
+    }
+
+    /**
+     * Gets the number of threads of the pool
+     *
+     * @return the parallelism level
+     */
+    public int getParallelism () {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the searches running on the pool, or allows the next ones to run.
+     * Can be called from any thread.
+     *
+     * @param   halted  true to stop the running searches, false before searching again
+     */
+    public void setHalted (boolean halted) {
+        for (TicTacToe worker : running)
+            worker.setHalted(halted);
+    }
+
+    /**
+     * Stops the threads of the pool once they are idle
+     */
+    public void shutdown () {
+        pool.shutdown();
+    }
+
+    /**
+     * Scores the given root moves of a game in parallel
+     *
+     * @param   game        the game with the AI to move
+     * @param   moves       bitmask of the root moves to score
+     * @param   scores      receives the score of each move, exact only if it
+     *                      is not below the best score
+     * @param   stats       receives the nodes, depth, cutoffs and table hits of
+     *                      the search of each move
+     */
+    public void scoreRootMoves (TicTacToe game, int moves, int[] scores, SearchStats[] stats) {
+        AtomicInteger best = new AtomicInteger (Integer.MIN_VALUE);
+        List<ForkJoinTask<?>> tasks = new ArrayList<> ();
+
+        for (; moves != 0; moves &= moves - 1) {
+            int cell = Integer.numberOfTrailingZeros(moves);
+
+            tasks.add(ForkJoinTask.adapt(() -> {
+                TicTacToe worker = workers.get();
+                // a move scoring exactly the best score may still win the row-major tie-break
+                int floor = best.get() != Integer.MIN_VALUE ? best.get() - 1 : Integer.MIN_VALUE;
+
+                worker.copyGame(game);
+                // clears the halt of the last search, or takes one that came before this task
+                worker.setHalted(game.isHalted());
+                worker.resetStats();
+                long hits = worker.getTable().getHits();
+                long start = System.nanoTime ();
+                scores[cell] = worker.scoreMove(cell / TicTacToe.SIZE, cell % TicTacToe.SIZE, floor);
+                stats[cell] = new SearchStats (game.getAILevel(), worker.getNodes(), worker.getMaxDepth(),
+                                               worker.getCutoffs(), worker.getTable().getHits() - hits,
+                                               System.nanoTime () - start);
+
+                // only an exact score may raise the shared bound
+                if (scores[cell] > floor)
+                    best.accumulateAndGet(scores[cell], Math::max);
+            }));
+        }
+
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    /**
+     * Creates the search copy of a pool thread
+     *
+     * @return the new copy, registered for halts
+     */
+    private TicTacToe newWorker () {
+        TicTacToe worker = new TicTacToe ();
+
+        running.add(worker);
+        return worker;
+    }
+}
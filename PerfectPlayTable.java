@@ -0,0 +1,242 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * Precomputed answers of the level 3 search for every reachable position where
+ * the AI is to move, stored by their canonical (symmetry-reduced) form. The
+ * table is generated offline by TableGenerator and memory-mapped at startup so
+ * a move is found with a single hash probe instead of a search.
+ *
+ * File layout (big-endian): magic, version, capacity and count as ints,
+ * followed by capacity slots of SLOT_BYTES each:
+ * key (int, canonical AI << CELLS | Player, plus one, 0 for an empty slot),
+ * value (int, level 3 minimax score), moves (short, bitmask of the best tiles
+ * in canonical orientation), result (byte, 1 AI win | 0 draw | -1 AI loss)
+ * and distance (byte, number of moves until the game ends under perfect play).
+ *
+ * A probe keeps the slot it found, so threads probing the same table each use
+ * their own view() of it.
+ */
+public class PerfectPlayTable {
+    /**
+     * Default location of the table, next to the other game resources
+     */
+    public static final String PATH = "tables/level3.tbl";
+    /**
+     * First int of the file
+     */
+    public static final int MAGIC = 0x54545433; // "TTT3"
+    /**
+     * Format version of the file
+     */
+    public static final int VERSION = 1;
+    /**
+     * Size of the file header in bytes
+     */
+    public static final int HEADER_BYTES = 16;
+    /**
+     * Size of a single slot in bytes
+     */
+    public static final int SLOT_BYTES = 12;
+    /**
+     * Mapped contents of the table file
+     */
+    private ByteBuffer buffer;
+    /**
+     * Mask to turn a hashed key into a slot index
+     */
+    private int mask;
+    /**
+     * Offset of the slot found by the last successful probe
+     */
+    private int found;
+    /**
+     * Symmetry mapping the last probed position onto its canonical form
+     */
+    private int symmetry;
+
+    /**
+     * Creates a table over already loaded or mapped contents
+     *
+     * @param   buffer  contents of a table file
+     *
+     * @throws IOException if the contents are not a table of this version
+     */
+    public PerfectPlayTable (ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException ("Not a version " + VERSION + " perfect play table");
+
+        this.buffer = buffer;
+        mask = buffer.getInt(8) - 1;
+    }
+
+    /**
+     * Gets a new view of this table for another thread. Views share the
+     * mapped contents and keep their own last probe.
+     *
+     * @return a view of the contents of this table
+     */
+    public PerfectPlayTable view () {
+        try {
+            return new PerfectPlayTable (buffer.duplicate());
+        } catch (IOException e) {
+            // the contents were checked when this table was created
+            throw new UncheckedIOException (e);
+        }
+    }
+
+    /**
+     * Memory-maps a table file
+     *
+     * @param   path    location of the table file
+     *
+     * @return  the mapped table
+     *
+     * @throws IOException if the file cannot be read or is not a table
+     */
+    public static PerfectPlayTable map (String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return new PerfectPlayTable (channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Memory-maps the table at the default location
+     *
+     * @return the mapped table, or null if it does not exist or cannot be read,
+     *         in which case level 3 falls back to the live search
+     */
+    public static PerfectPlayTable mapDefault () {
+        try {
+            return map(PATH);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the slot a key is stored in or would be stored in
+     *
+     * @param   buffer  contents of a table file
+     * @param   mask    capacity of the table minus one
+     * @param   key     slot key of the canonical position
+     *
+     * @return  the offset of the slot in the buffer
+     */
+    private static int slotOf (ByteBuffer buffer, int mask, int key) {
+        int slot = (key * 0x9E3779B1 >>> 16) & mask;
+
+        // linear probing until the key or an empty slot
+        while (buffer.getInt(HEADER_BYTES + slot * SLOT_BYTES) != key &&
+               buffer.getInt(HEADER_BYTES + slot * SLOT_BYTES) != 0)
+            slot = (slot + 1) & mask;
+
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * Looks up a position with the AI to move. On a hit the entry can be read
+     * through getMove(), getValue(), getResult() and getDistance() until the
+     * next probe.
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return  true if the position is in the table, otherwise false
+     */
+    public boolean probe (int ai, int player) {
+        symmetry = Symmetry.canonical(ai, player);
+        int key = (Symmetry.transform(ai, symmetry) << BitBoard.CELLS | Symmetry.transform(player, symmetry)) + 1;
+
+        found = slotOf(buffer, mask, key);
+        return buffer.getInt(found) == key;
+    }
+
+    /**
+     * Gets the best move of the last found position. Of the equally scored
+     * best tiles the first in row-major order of the probed board is chosen,
+     * as the live search does.
+     *
+     * @return the index of the tile (row * SIZE + col), or -1 if every move
+     *         loses and the live search would not pick any
+     */
+    public int getMove () {
+        int best = BitBoard.CELLS;
+
+        for (int moves = buffer.getShort(found + 8) & BitBoard.FULL; moves != 0; moves &= moves - 1)
+            best = Math.min(best, Symmetry.INVERSE[symmetry][Integer.numberOfTrailingZeros(moves)]);
+
+        return best == BitBoard.CELLS ? -1 : best;
+    }
+
+    /**
+     * Gets the level 3 minimax score of the last found position
+     *
+     * @return the score of the best move
+     */
+    public int getValue () {
+        return buffer.getInt(found + 4);
+    }
+
+    /**
+     * Gets the perfect play result of the last found position
+     *
+     * @return 1 if the AI wins, 0 for a draw, -1 if the AI loses
+     */
+    public int getResult () {
+        return buffer.get(found + 10);
+    }
+
+    /**
+     * Gets the distance to the result of the last found position
+     *
+     * @return the number of moves left until the game ends under perfect play
+     */
+    public int getDistance () {
+        return buffer.get(found + 11);
+    }
+
+    /**
+     * Writes a table file
+     *
+     * @param   path        location of the table file
+     * @param   ai          canonical AI bitmask of every entry
+     * @param   player      canonical Player bitmask of every entry
+     * @param   values      level 3 score of every entry
+     * @param   moves       bitmask of the best tiles of every entry
+     * @param   results     perfect play result of every entry
+     * @param   distances   distance to the result of every entry
+     * @param   count       number of entries
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public static void write (String path, int[] ai, int[] player, int[] values, int[] moves,
+                              int[] results, int[] distances, int count) throws IOException {
+        // keep the table at most half full so probes stay short
+        int capacity = Integer.highestOneBit(Math.max(1, count * 2 - 1)) << 1;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + capacity * SLOT_BYTES);
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, count);
+
+        for (int i = 0; i < count; i++) {
+            int key = (ai[i] << BitBoard.CELLS | player[i]) + 1;
+            int slot = slotOf(buffer, capacity - 1, key);
+
+            buffer.putInt(slot, key);
+            buffer.putInt(slot + 4, values[i]);
+            buffer.putShort(slot + 8, (short) moves[i]);
+            buffer.put(slot + 10, (byte) results[i]);
+            buffer.put(slot + 11, (byte) distances[i]);
+        }
+
+        Path file = Paths.get(path);
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        Files.write(file, buffer.array());
+    }
+}
@@ -0,0 +1,402 @@
+import java.util.*;
+
+/**
+ * Depth-first proof-number search (df-pn) that solves a position: proves
+ * whether the side to move wins, draws or loses under perfect play, and gives
+ * the move that achieves it. Instead of searching every move to a fixed depth
+ * like the minimax search, it always expands the move that is cheapest to
+ * prove or disprove, which finds forced wins on larger boards far sooner.
+ *
+ * A proof only answers a yes or no question, so a position is solved with up
+ * to two of them: does the side to move win, and if not, does it at least
+ * draw. The proof and disproof numbers of the positions are kept in a
+ * transposition table of fixed size, so the memory used is bounded by the
+ * budget given to the constructor; entries of solved positions are replaced
+ * last.
+ *
+ * Usage: java ProofNumberSearch [size] [length] [megabytes] [node limit]
+ */
+public class ProofNumberSearch {
+    /**
+     * Default memory budget of the table in bytes
+     */
+    public static final long TABLE_BYTES = 1 << 26;
+    /**
+     * Proof or disproof number of a position that can no longer be proven
+     * or disproven
+     */
+    public static final int INFINITY = (1 << 28) - 1;
+
+    /**
+     * Keys of the table entries, two entries per bucket
+     */
+    private long[] keys;
+    /**
+     * Entries of the table: phi (28 bits), delta (28 bits) and the move that
+     * solved the position (8 bits, 0xFF for none)
+     */
+    private long[] entries;
+    /**
+     * Mask to turn a key into a bucket index
+     */
+    private int mask;
+    /**
+     * Board being solved
+     */
+    private GridBoard position;
+    /**
+     * Side to move of the solved position, the side the current question is about
+     */
+    private boolean attacker;
+    /**
+     * Indicator if a draw answers the current question with yes
+     */
+    private boolean drawProves;
+    /**
+     * Node budget per solve, 0 for no limit
+     */
+    private long nodeLimit;
+    /**
+     * Number of positions expanded by the last solve
+     */
+    private long nodes;
+    /**
+     * Move that wins, or draws if the position is a draw, -1 if none
+     */
+    private int move;
+    /**
+     * Indicator if the last solve ran out of nodes
+     */
+    private boolean aborted;
+    /**
+     * Child list of each ply, by the number of pieces on the board
+     */
+    private int[][] children = new int[0][];
+    /**
+     * phi and delta of the last probe
+     */
+    private int phi, delta;
+    /**
+     * Slot of the entry found by the last probe, -1 if none
+     */
+    private int slot;
+
+    public static void main (String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        long megabytes = args.length > 2 ? Long.parseLong(args[2]) : TABLE_BYTES >> 20;
+        long nodeLimit = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        ProofNumberSearch solver = new ProofNumberSearch (megabytes << 20);
+        solver.setNodeLimit(nodeLimit);
+
+        long start = System.nanoTime ();
+        GameStatus status = solver.solve(new GridBoard (size, length), true);
+        double seconds = (System.nanoTime () - start) / 1e9;
+
+        System.out.println (size + "x" + size + " board, " + length + " in a row, first player to move");
+        System.out.println ("Result: " + (status == GameStatus.AI_WIN ? "first player wins"
+                                        : status == GameStatus.PLAYER_WIN ? "second player wins"
+                                        : status == GameStatus.DRAW ? "draw" : "not solved within the node limit"));
+        if (solver.getMove() != -1)
+            System.out.println ("Move: row " + solver.getMove() / size + ", column " + solver.getMove() % size);
+        System.out.printf ("Nodes: %d, %.2f s, %.0f nodes per second%n", solver.getNodes(), seconds,
+                           solver.getNodes() / Math.max(1e-9, seconds));
+    }
+
+    /**
+     * Creates a solver using at most the given amount of memory for its table.
+     * The number of entries is rounded down to a power of two.
+     *
+     * @param   bytes   memory budget of the table
+     */
+    public ProofNumberSearch (long bytes) {
+        int capacity = Integer.highestOneBit((int) Math.max(2, Math.min(bytes / 16, 1 << 29)));
+
+        keys = new long[capacity];
+        entries = new long[capacity];
+        mask = capacity / 2 - 1;
+    }
+
+    /**
+     * Creates a solver with a table of TABLE_BYTES
+     */
+    public ProofNumberSearch () {
+        this(TABLE_BYTES);
+    }
+
+    /**
+     * Sets the node budget of every solve
+     *
+     * @param   nodeLimit   number of positions a solve may expand, 0 for no limit
+     */
+    public void setNodeLimit (long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Gets the number of positions expanded by the last solve
+     *
+     * @return the node count
+     */
+    public long getNodes () {
+        return nodes;
+    }
+
+    /**
+     * Gets the move proving the result of the last solve
+     *
+     * @return the index of the tile (row * size + col) that wins, or draws in a
+     *         drawn position, -1 if every move loses or the position was not solved
+     */
+    public int getMove () {
+        return move;
+    }
+
+    /**
+     * Solves the board of a game with the AI to move
+     *
+     * @param   game    the game
+     *
+     * @return  AI_WIN, PLAYER_WIN or DRAW under perfect play,
+     *          IN_PROGRESS if the node budget ran out first
+     */
+    public GameStatus solve (TicTacToe game) {
+        GridBoard board = new GridBoard (TicTacToe.SIZE, TicTacToe.SIZE);
+
+        for (int row = 0; row < TicTacToe.SIZE; row++)
+            for (int col = 0; col < TicTacToe.SIZE; col++)
+                if (game.getBoard()[row][col] == game.getAI())
+                    board.play(row * TicTacToe.SIZE + col, true);
+                else if (game.getBoard()[row][col] == game.getPlayer())
+                    board.play(row * TicTacToe.SIZE + col, false);
+
+        return solve(board, true);
+    }
+
+    /**
+     * Solves a board. The board is searched in place and left as it was found.
+     *
+     * @param   board   the board
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  AI_WIN, PLAYER_WIN or DRAW under perfect play,
+     *          IN_PROGRESS if the node budget ran out first
+     *
+     * @throws IllegalArgumentException if the board has more than GridSearch.MAX_CELLS tiles
+     */
+    public GameStatus solve (GridBoard board, boolean isAI) {
+        if (board.getCells() > GridSearch.MAX_CELLS)
+            throw new IllegalArgumentException ("No solver for boards of more than " + GridSearch.MAX_CELLS + " tiles");
+
+        if (children.length != board.getCells() + 1)
+            children = new int[board.getCells() + 1][board.getCells()];
+        position = board;
+        attacker = isAI;
+        nodes = 0;
+        move = -1;
+        aborted = false;
+
+        GameStatus win = isAI ? GameStatus.AI_WIN : GameStatus.PLAYER_WIN;
+        GameStatus loss = isAI ? GameStatus.PLAYER_WIN : GameStatus.AI_WIN;
+
+        if (board.hasWon(true) || board.hasWon(false))
+            return board.hasWon(true) ? GameStatus.AI_WIN : GameStatus.PLAYER_WIN;
+        if (board.getMovesLeft() == 0)
+            return GameStatus.DRAW;
+
+        // does the side to move win?
+        if (prove(false))
+            return win;
+        if (aborted)
+            return GameStatus.IN_PROGRESS;
+
+        // does it at least draw?
+        if (prove(true))
+            return GameStatus.DRAW;
+
+        return aborted ? GameStatus.IN_PROGRESS : loss;
+    }
+
+    /**
+     * Answers one question about the side to move of the solved position
+     *
+     * @param   drawProves  false to ask if it wins, true to ask if it wins or draws
+     *
+     * @return  true if proven, false if disproven or the node budget ran out
+     */
+    private boolean prove (boolean drawProves) {
+        this.drawProves = drawProves;
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+
+        search(attacker, INFINITY, INFINITY);
+        probe(keyOf(attacker));
+        if (aborted || phi != 0)
+            return false;
+
+        move = (int) (found() >>> 56);
+        if (move == 0xFF)
+            move = -1;
+        return true;
+    }
+
+    /**
+     * Expands a position until its phi reaches thPhi or its delta reaches
+     * thDelta. phi and delta are the proof and disproof numbers seen from
+     * the side to move: phi is the number of positions still to solve to
+     * prove the side to move answers the question its way, delta to disprove
+     * it. The attacker answers yes, the defender no.
+     *
+     * @param   isAI    indicator if the AI is to move
+     * @param   thPhi   threshold of phi
+     * @param   thDelta threshold of delta
+     */
+    private void search (boolean isAI, int thPhi, int thDelta) {
+        nodes += 1;
+        if (nodeLimit > 0 && nodes >= nodeLimit)
+            aborted = true;
+
+        long key = keyOf(isAI);
+        int[] list = children[position.getPieces()];
+        int count = 0;
+        int end = position.getCells();
+
+        for (int cell = position.firstEmpty(); cell != end; cell = position.nextEmpty(cell))
+            list[count++] = cell;
+
+        while (!aborted) {
+            int minDelta = INFINITY;
+            int secondDelta = INFINITY;
+            int sumPhi = 0;
+            int best = -1;
+            int bestPhi = 0;
+
+            for (int i = 0; i < count; i++) {
+                child(list[i], isAI);
+                sumPhi = Math.min(INFINITY, sumPhi + phi);
+                if (delta < minDelta) {
+                    secondDelta = minDelta;
+                    minDelta = delta;
+                    best = list[i];
+                    bestPhi = phi;
+                } else if (delta < secondDelta)
+                    secondDelta = delta;
+            }
+
+            // phi of a position is the smallest delta of its moves, delta the sum of their phis
+            if (minDelta >= thPhi || sumPhi >= thDelta) {
+                store(key, minDelta, sumPhi, best);
+                return;
+            }
+
+            position.play(best, isAI);
+            search(!isAI, (int) Math.min(INFINITY, (long) thDelta - sumPhi + bestPhi),
+                   Math.min(thPhi, secondDelta + 1));
+            position.undo(best, isAI);
+        }
+    }
+
+    /**
+     * Gets phi and delta of the position after a move, from the side to move
+     * after it: solved at once if the move ends the game, otherwise from the
+     * table, 1 and 1 for a position not searched yet
+     *
+     * @param   cell    index of the tile (row * size + col)
+     * @param   isAI    indicator if the AI makes the move
+     */
+    private void child (int cell, boolean isAI) {
+        position.play(cell, isAI);
+
+        if (position.hasWon(isAI)) {
+            // the side to move after the move has lost
+            phi = INFINITY;
+            delta = 0;
+        } else if (position.getMovesLeft() == 0) {
+            // a draw answers yes for the attacker if drawProves, no otherwise
+            boolean proven = (isAI != attacker) == drawProves;
+            phi = proven ? 0 : INFINITY;
+            delta = proven ? INFINITY : 0;
+        } else
+            probe(keyOf(!isAI));
+
+        position.undo(cell, isAI);
+    }
+
+    /**
+     * Gets the table key of the current position
+     *
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the Zobrist hash with the side to move, never 0
+     */
+    private long keyOf (boolean isAI) {
+        long key = isAI ? position.getHash() ^ position.getTable().getAIToMove() : position.getHash();
+        return key == 0 ? 1 : key;
+    }
+
+    /**
+     * Looks up a position, setting phi and delta to the stored numbers or
+     * to 1 and 1 if the position is not stored
+     *
+     * @param   key     table key of the position
+     */
+    private void probe (long key) {
+        int bucket = ((int) key & mask) << 1;
+
+        slot = keys[bucket] == key ? bucket : keys[bucket + 1] == key ? bucket + 1 : -1;
+        if (slot == -1) {
+            phi = 1;
+            delta = 1;
+        } else {
+            phi = (int) (entries[slot] & INFINITY);
+            delta = (int) (entries[slot] >>> 28 & INFINITY);
+        }
+    }
+
+    /**
+     * Gets the entry found by the last probe
+     *
+     * @return the packed entry, with no move if none was found
+     */
+    private long found () {
+        return slot == -1 ? 0xFFL << 56 : entries[slot];
+    }
+
+    /**
+     * Stores the numbers of a position. The same position or an empty slot of
+     * its bucket is used first, then a slot of an unsolved position.
+     *
+     * @param   key     table key of the position
+     * @param   phi     proof number from the side to move
+     * @param   delta   disproof number from the side to move
+     * @param   move    the move with the smallest delta, the proving move once phi is 0
+     */
+    private void store (long key, int phi, int delta, int move) {
+        int bucket = ((int) key & mask) << 1;
+        int target;
+
+        if (keys[bucket + 1] == key)
+            target = bucket + 1;
+        else if (keys[bucket] == key || keys[bucket] == 0)
+            target = bucket;
+        else if (keys[bucket + 1] == 0)
+            target = bucket + 1;
+        else
+            target = solved(bucket) && !solved(bucket + 1) ? bucket + 1 : bucket;
+
+        keys[target] = key;
+        entries[target] = phi | (long) delta << 28 | (long) (move & 0xFF) << 56;
+    }
+
+    /**
+     * Checks if a table slot holds a solved position
+     *
+     * @param   slot    index of the slot
+     *
+     * @return  true if its phi or delta is 0
+     */
+    private boolean solved (int slot) {
+        return (entries[slot] & INFINITY) == 0 || (entries[slot] >>> 28 & INFINITY) == 0;
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Ordered pattern rules of behavior level 1. Each rule names the tiles that
+ * must hold an AI piece, hold a Player piece or be empty, and the tile the AI
+ * plays when they do; the first matching rule gives the move. Rules are read
+ * from a text file (see tables/level1.rules for the format), so the behavior
+ * changes with the table alone, and are kept as bitmasks of up to 64 tiles,
+ * so matching a board is a few mask tests per rule without any allocation.
+ *
+ * A table only keeps rules once it is built, so one table can be matched
+ * from any number of threads.
+ */
+public class RuleTable {
+    /**
+     * Default location of the level 1 rules, next to the other game resources
+     */
+    public static final String PATH = "tables/level1.rules";
+    /**
+     * Row and column length of the boards the rules are written for
+     */
+    private int size;
+    /**
+     * Tiles each rule requires to hold an AI piece
+     */
+    private long[] ai = new long[16];
+    /**
+     * Tiles each rule requires to hold a Player piece
+     */
+    private long[] player = new long[16];
+    /**
+     * Tiles each rule requires to be empty, including its target
+     */
+    private long[] empty = new long[16];
+    /**
+     * Tile (row * size + col) each rule plays
+     */
+    private int[] targets = new int[16];
+    /**
+     * Number of rules
+     */
+    private int count;
+
+    /**
+     * Creates an empty table
+     *
+     * @param   size    row and column length of the board
+     *
+     * @throws IllegalArgumentException if the board has more than 64 tiles
+     */
+    public RuleTable (int size) {
+        if (size < 1 || size * size > Long.SIZE)
+            throw new IllegalArgumentException ("No rules for a board of size " + size);
+
+        this.size = size;
+    }
+
+    /**
+     * Reads a table from a rules file
+     *
+     * @param   path    location of the file
+     * @param   size    row and column length of the board
+     *
+     * @return  the rules of the file in their order
+     *
+     * @throws IOException if the file cannot be read or a rule does not fit the board
+     */
+    public static RuleTable load (String path, int size) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            return parse(reader, size);
+        }
+    }
+
+    /**
+     * Reads the default table from the working directory, or from the class
+     * path when the game runs from another directory. Only if neither holds
+     * the file are the generic rules built, with a warning, as they play
+     * differently.
+     *
+     * @return  the level 1 rules for the board size of the game
+     *
+     * @throws UncheckedIOException if the file is found but cannot be read or
+     *         a rule does not fit the board
+     */
+    public static RuleTable loadDefault () {
+        try {
+            if (Files.exists(Paths.get(PATH)))
+                return load(PATH, TicTacToe.SIZE);
+
+            InputStream stream = RuleTable.class.getResourceAsStream("/" + PATH);
+            if (stream != null)
+                try (BufferedReader reader = new BufferedReader (new InputStreamReader (stream, StandardCharsets.UTF_8))) {
+                    return parse(reader, TicTacToe.SIZE);
+                }
+        } catch (IOException e) {
+            // a broken rules file is reported, not silently replaced by other rules
+            throw new UncheckedIOException ("Cannot read the level 1 rules " + PATH, e);
+        }
+
+        System.err.println ("Level 1 rules " + PATH + " not found, using the generic rules");
+        return generic(TicTacToe.SIZE);
+    }
+
+    /**
+     * Reads rules, one per line. Empty lines and lines starting with # are skipped.
+     *
+     * @param   reader  source of the rules
+     * @param   size    row and column length of the board
+     *
+     * @return  the rules in their order
+     *
+     * @throws IOException if the source cannot be read or a rule does not fit the board
+     */
+    public static RuleTable parse (BufferedReader reader, int size) throws IOException {
+        RuleTable table = new RuleTable (size);
+        String line;
+
+        for (int number = 1; (line = reader.readLine()) != null; number++) {
+            String[] parts = line.trim().split("\\s+");
+
+            if (parts[0].isEmpty() || parts[0].startsWith("#"))
+                continue;
+            try {
+                if (parts.length == 3 && parts[1].equals("line"))
+                    table.addLines(parts[2]);
+                else if (parts.length == 2)
+                    table.addPattern(parts[1]);
+                else
+                    throw new IllegalArgumentException ("Expected a label and a pattern");
+            } catch (IllegalArgumentException e) {
+                throw new IOException ("Rule on line " + number + ": " + e.getMessage());
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Builds rules that fit any board size: complete an AI line, block a Player
+     * line, then take the center, a corner, or the first empty tile
+     *
+     * @param   size    row and column length of the board
+     *
+     * @return  the generic rules
+     */
+    public static RuleTable generic (int size) {
+        RuleTable table = new RuleTable (size);
+        int last = size - 1;
+
+        table.addLines("A");
+        table.addLines("P");
+        if (size % 2 == 1)
+            table.add(0, 0, 0, (last / 2) * size + last / 2);
+        for (int corner : new int[] {0, size * size - 1, last, last * size})
+            table.add(0, 0, 0, corner);
+        for (int cell = 0; cell < size * size; cell++)
+            table.add(0, 0, 0, cell);
+
+        return table;
+    }
+
+    /**
+     * Adds a rule written as a board pattern
+     *
+     * @param   pattern     rows separated by '/' of A (AI), P (Player), . (empty),
+     *                      * (target, empty) and ? (any) tiles
+     *
+     * @throws IllegalArgumentException if the pattern does not fit the board or
+     *         has not exactly one target
+     */
+    private void addPattern (String pattern) {
+        String[] rows = pattern.split("/");
+        long aiTiles = 0, playerTiles = 0, emptyTiles = 0;
+        int target = -1;
+
+        if (rows.length != size)
+            throw new IllegalArgumentException ("Expected " + size + " rows in " + pattern);
+
+        for (int row = 0; row < size; row++) {
+            if (rows[row].length() != size)
+                throw new IllegalArgumentException ("Expected " + size + " tiles in row " + rows[row]);
+
+            for (int col = 0; col < size; col++) {
+                long tile = 1L << (row * size + col);
+
+                switch (rows[row].charAt(col)) {
+                    case 'A': aiTiles |= tile; break;
+                    case 'P': playerTiles |= tile; break;
+                    case '.': emptyTiles |= tile; break;
+                    case '?': break;
+                    case '*':
+                        if (target != -1)
+                            throw new IllegalArgumentException ("More than one target in " + pattern);
+                        target = row * size + col;
+                        break;
+                    default:
+                        throw new IllegalArgumentException ("Unknown tile " + rows[row].charAt(col) + " in " + pattern);
+                }
+            }
+        }
+
+        if (target == -1)
+            throw new IllegalArgumentException ("No target in " + pattern);
+
+        add(aiTiles, playerTiles, emptyTiles, target);
+    }
+
+    /**
+     * Adds a rule for each tile of each row, column and diagonal (in that order),
+     * targeting the tile when the rest of its line is held by one side
+     *
+     * @param   side    A if the AI holds the rest of the line, P for the Player
+     *
+     * @throws IllegalArgumentException if the side is neither
+     */
+    private void addLines (String side) {
+        if (!side.equals("A") && !side.equals("P"))
+            throw new IllegalArgumentException ("Expected A or P after line");
+
+        boolean isAI = side.equals("A");
+        LineTable table = LineTable.of(size, size);
+        long[] lines = new long[table.getLineCount()];
+        for (int l = 0; l < lines.length; l++)
+            for (int cell : table.getLine(l))
+                lines[l] |= 1L << cell;
+
+        for (long line : lines)
+            for (long tiles = line; tiles != 0; tiles &= tiles - 1) {
+                int target = Long.numberOfTrailingZeros(tiles);
+                long rest = line & ~(1L << target);
+                add(isAI ? rest : 0, isAI ? 0 : rest, 0, target);
+            }
+    }
+
+    /**
+     * Appends a rule
+     *
+     * @param   aiTiles     tiles that must hold an AI piece
+     * @param   playerTiles tiles that must hold a Player piece
+     * @param   emptyTiles  tiles that must be empty
+     * @param   target      tile (row * size + col) to play, must be empty as well
+     */
+    private void add (long aiTiles, long playerTiles, long emptyTiles, int target) {
+        if (count == targets.length) {
+            ai = Arrays.copyOf(ai, count * 2);
+            player = Arrays.copyOf(player, count * 2);
+            empty = Arrays.copyOf(empty, count * 2);
+            targets = Arrays.copyOf(targets, count * 2);
+        }
+
+        ai[count] = aiTiles;
+        player[count] = playerTiles;
+        empty[count] = emptyTiles | 1L << target;
+        targets[count] = target;
+        count++;
+    }
+
+    /**
+     * Finds the move of the first rule matching a board
+     *
+     * @param   aiTiles     tiles holding an AI piece (bit row * size + col)
+     * @param   playerTiles tiles holding a Player piece
+     *
+     * @return  the target tile of the first matching rule, -1 if none matches
+     */
+    public int pick (long aiTiles, long playerTiles) {
+        long emptyTiles = ~(aiTiles | playerTiles);
+
+        for (int i = 0; i < count; i++)
+            if ((aiTiles & ai[i]) == ai[i] && (playerTiles & player[i]) == player[i] &&
+                (emptyTiles & empty[i]) == empty[i])
+                return targets[i];
+
+        return -1;
+    }
+}
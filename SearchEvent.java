@@ -0,0 +1,34 @@
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder event committed by every pickAIMove() call, carrying the
+ * same figures as SearchStats. The event duration is the time to decision.
+ * Record a session with -XX:StartFlightRecording and read the events with
+ * "jfr print --events tictactoe.Search recording.jfr".
+ */
+@Name("tictactoe.Search")
+@Label("AI Search")
+@Category("TicTacToe")
+@Description("Statistics of the search behind an AI move")
+@StackTrace(false)
+public class SearchEvent extends Event {
+    @Label("Behavior Level")
+    public int level;
+
+    @Label("Nodes")
+    public long nodes;
+
+    @Label("Nodes per Second")
+    @Frequency
+    public double nodesPerSecond;
+
+    @Label("Max Depth")
+    @Description("Deepest ply below the current board the search reached")
+    public int maxDepth;
+
+    @Label("Cutoffs")
+    public long cutoffs;
+
+    @Label("Table Hits")
+    public long tableHits;
+}
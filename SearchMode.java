@@ -0,0 +1,21 @@
+/**
+ * Implementations of the behavior level 3 search. All of them play the same
+ * moves, they differ only in how much of the game tree they visit.
+ */
+public enum SearchMode {
+    /**
+     * Alpha-beta minimax with separate AI and Player branches
+     */
+    MINIMAX,
+    /**
+     * Negamax with principal variation (null-window) search and an
+     * aspiration window around the previous score
+     */
+    NEGAMAX,
+    /**
+     * Negamax on the calling thread while helper threads (setHelperThreads)
+     * search the same position with other depths and move orders, sharing
+     * their results only through the transposition table
+     */
+    LAZY_SMP
+}
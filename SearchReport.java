@@ -0,0 +1,162 @@
+import java.util.*;
+
+/**
+ * Compares the level 3 search implementations over every reachable position
+ * where the AI is to move, reporting searched nodes, cutoff rate and how often
+ * the first move searched caused the cutoff. Each position is searched with an
+ * empty transposition table.
+ *
+ * With "parallel", instead reports the time and speedup of the parallel root
+ * search of levels 3 and 4 over the same positions for 1 to N threads.
+ *
+ * Usage: java SearchReport [parallel [N]]
+ */
+public class SearchReport {
+    public static void main (String[] args) {
+        List<int[]> positions = new ArrayList<> ();
+
+        collect(0, 0, true, new HashSet<> (), positions);
+        collect(0, 0, false, new HashSet<> (), positions);
+
+        if (args.length > 0 && args[0].equals("parallel")) {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            speedup(threads, positions);
+            return;
+        }
+
+        System.out.println ("Positions: " + positions.size ());
+        System.out.printf ("%-20s %12s %12s %12s %14s %10s%n",
+                           "search", "nodes", "cutoffs", "cutoff rate", "first cutoffs", "time (ms)");
+        report("minimax, row-major", SearchMode.MINIMAX, false, positions);
+        report("minimax, ordered", SearchMode.MINIMAX, true, positions);
+        report("negamax, row-major", SearchMode.NEGAMAX, false, positions);
+        report("negamax, ordered", SearchMode.NEGAMAX, true, positions);
+    }
+
+    /**
+     * Times the parallel root search for 1 to threads threads and prints the
+     * speedup over one thread. Both levels are timed on their first pass, as
+     * the workers keep their transposition tables.
+     *
+     * @param   threads     highest number of threads to time
+     * @param   positions   AI and Player bitmasks of the positions
+     */
+    private static void speedup (int threads, List<int[]> positions) {
+        double level3 = 0, level4 = 0;
+
+        System.out.println ("Positions: " + positions.size ());
+        System.out.printf ("%-8s %14s %10s %14s %10s%n", "threads", "level 3 (ms)", "speedup", "level 4 (ms)", "speedup");
+        for (int n = 1; n <= threads; n++) {
+            double time3 = time(3, n, positions, 1);
+            double time4 = time(4, n, positions, 1);
+
+            if (n == 1) {
+                level3 = time3;
+                level4 = time4;
+            }
+            System.out.printf ("%-8d %14.1f %9.2fx %14.1f %9.2fx%n", n, time3, level3 / time3, time4, level4 / time4);
+        }
+    }
+
+    /**
+     * Searches every position with a new game and returns the time of the last pass
+     *
+     * @param   level       behavior level
+     * @param   threads     parallelism of the search
+     * @param   positions   AI and Player bitmasks of the positions
+     * @param   passes      number of passes over the positions
+     *
+     * @return  the time of the last pass in milliseconds
+     */
+    private static double time (int level, int threads, List<int[]> positions, int passes) {
+        TicTacToe game = new TicTacToe ();
+        long start = 0;
+
+        game.setAILevel(level);
+        game.setLookupTable(null);
+        game.setParallelism(threads);
+        for (int pass = 0; pass < passes; pass++) {
+            start = System.nanoTime ();
+            for (int[] position : positions) {
+                load(game, position);
+                game.pickAIMove();
+            }
+        }
+        game.setParallelism(1);
+
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /**
+     * Puts a position on the board of a game, the AI has the first move if
+     * both sides have the same number of pieces
+     *
+     * @param   game        the game
+     * @param   position    AI and Player bitmasks
+     */
+    private static void load (TicTacToe game, int[] position) {
+        game.resetBoard();
+        game.setGamePieces(Integer.bitCount(position[0]) == Integer.bitCount(position[1]));
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            if ((position[0] & 1 << cell) != 0)
+                game.getBoard()[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] = game.getAI();
+            else if ((position[1] & 1 << cell) != 0)
+                game.getBoard()[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] = game.getPlayer();
+    }
+
+    /**
+     * Searches every position with level 3 and prints one line of totals
+     *
+     * @param   name        name of the row
+     * @param   mode        search implementation
+     * @param   ordered     indicator if move ordering is on
+     * @param   positions   AI and Player bitmasks of the positions
+     */
+    private static void report (String name, SearchMode mode, boolean ordered, List<int[]> positions) {
+        TicTacToe game = new TicTacToe ();
+        long start = System.nanoTime ();
+
+        game.setAILevel(3);
+        game.setLookupTable(null);
+        game.setSearchMode(mode);
+        game.setMoveOrdering(ordered);
+        for (int[] position : positions) {
+            load(game, position);
+            game.getTable().clear();
+            game.pickAIMove();
+        }
+
+        System.out.printf ("%-20s %12d %12d %11.1f%% %13.1f%% %10.1f%n", name, game.getNodes(), game.getCutoffs(),
+                           100.0 * game.getCutoffs() / game.getNodes(),
+                           100.0 * game.getFirstCutoffs() / Math.max(1, game.getCutoffs()),
+                           (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Collects every position reachable from the given one where the AI is to
+     * move and the game is not over
+     *
+     * @param   ai          AI bitmask
+     * @param   player      Player bitmask
+     * @param   AITurn      indicator if the AI is to move
+     * @param   visited     positions already collected
+     * @param   positions   list to add the positions to
+     */
+    private static void collect (int ai, int player, boolean AITurn, Set<Integer> visited, List<int[]> positions) {
+        if (BitBoard.hasWon(ai) || BitBoard.hasWon(player) || (ai | player) == BitBoard.FULL)
+            return;
+        if (!visited.add(ai << BitBoard.CELLS | player | (AITurn ? 1 << 30 : 0)))
+            return;
+        if (AITurn)
+            positions.add(new int[] {ai, player});
+
+        for (int empty = ~(ai | player) & BitBoard.FULL; empty != 0; empty &= empty - 1) {
+            int bit = empty & -empty;
+
+            if (AITurn)
+                collect(ai | bit, player, false, visited, positions);
+            else
+                collect(ai, player | bit, true, visited, positions);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ * Statistics of a single pickAIMove() call, read through
+ * TicTacToe.getSearchStats(). Nodes, cutoffs and table hits include those of
+ * parallel and Lazy SMP helper threads, the depth is the deepest any thread
+ * reached.
+ */
+public class SearchStats {
+    /**
+     * Behavior level that picked the move
+     */
+    private final int level;
+    /**
+     * Number of nodes (minimax or negamax calls) searched
+     */
+    private final long nodes;
+    /**
+     * Deepest ply below the current board the search reached
+     */
+    private final int maxDepth;
+    /**
+     * Number of nodes whose remaining moves were pruned
+     */
+    private final long cutoffs;
+    /**
+     * Number of transposition table probes that found the position
+     */
+    private final long tableHits;
+    /**
+     * Wall-clock time from the call to the decision in nanoseconds
+     */
+    private final long nanos;
+
+    /**
+     * Creates the statistics of a search
+     *
+     * @param   level       behavior level that picked the move
+     * @param   nodes       number of nodes searched
+     * @param   maxDepth    deepest ply reached below the current board
+     * @param   cutoffs     number of beta cutoffs
+     * @param   tableHits   number of transposition table hits
+     * @param   nanos       time to decision in nanoseconds
+     */
+    public SearchStats (int level, long nodes, int maxDepth, long cutoffs, long tableHits, long nanos) {
+        this.level = level;
+        this.nodes = nodes;
+        this.maxDepth = maxDepth;
+        this.cutoffs = cutoffs;
+        this.tableHits = tableHits;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Gets the behavior level that picked the move
+     *
+     * @return the behavior level
+     */
+    public int getLevel () {
+        return level;
+    }
+
+    /**
+     * Gets the number of nodes searched
+     *
+     * @return the number of minimax or negamax calls
+     */
+    public long getNodes () {
+        return nodes;
+    }
+
+    /**
+     * Gets the search speed
+     *
+     * @return the number of nodes searched per second, 0 if the call took no measurable time
+     */
+    public double getNodesPerSecond () {
+        return nanos == 0 ? 0 : nodes * 1e9 / nanos;
+    }
+
+    /**
+     * Gets the deepest ply the search reached
+     *
+     * @return the number of moves looked ahead of the current board
+     */
+    public int getMaxDepth () {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the number of beta cutoffs
+     *
+     * @return the number of nodes whose remaining moves were pruned
+     */
+    public long getCutoffs () {
+        return cutoffs;
+    }
+
+    /**
+     * Gets the number of transposition table hits
+     *
+     * @return the number of probes that found the position
+     */
+    public long getTableHits () {
+        return tableHits;
+    }
+
+    /**
+     * Gets the time to decision
+     *
+     * @return the wall-clock time of the call in nanoseconds
+     */
+    public long getNanos () {
+        return nanos;
+    }
+
+    @Override
+    public String toString () {
+        return String.format ("level %d: %d nodes (%.0f nodes/s), depth %d, %d cutoffs, %d table hits, %.3f ms",
+                              level, nodes, getNodesPerSecond(), maxDepth, cutoffs, tableHits, nanos / 1e6);
+    }
+}
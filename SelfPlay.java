@@ -0,0 +1,188 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Headless AI versus AI games between two behavior levels, without the
+ * JavaFX View and Controller. Games are spread over a pool of threads, each
+ * thread playing on its own pair of TicTacToe instances. Game i is seeded with
+ * seed + i (level 0 moves) and the first move alternates between the levels,
+ * so a run can be replayed game by game.
+ *
+ * Reports the win, draw and loss rates of level A, the games played per second
+ * and the mean think time per move of each level.
+ *
+ * Usage: java SelfPlay levelA levelB [games] [threads] [seed]
+ */
+public class SelfPlay {
+    /**
+     * Number of games a thread takes at once
+     */
+    public static final int BATCH = 256;
+    /**
+     * Indexes of the totals of a tally
+     */
+    private static final int A_WINS = 0, DRAWS = 1, B_WINS = 2, A_NANOS = 3, A_MOVES = 4, B_NANOS = 5, B_MOVES = 6;
+    /**
+     * Behavior level of side A
+     */
+    private int levelA;
+    /**
+     * Behavior level of side B
+     */
+    private int levelB;
+    /**
+     * Number of games to play
+     */
+    private long games;
+    /**
+     * Seed of the first game
+     */
+    private long seed;
+    /**
+     * Index of the next game no thread has taken yet
+     */
+    private AtomicLong next = new AtomicLong ();
+
+    public static void main (String[] args) throws InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.out.println ("Usage: java SelfPlay levelA levelB [games] [threads] [seed]");
+            System.exit (1);
+        }
+
+        int levelA = Integer.parseInt(args[0]);
+        int levelB = Integer.parseInt(args[1]);
+        long games = args.length > 2 ? Long.parseLong(args[2]) : 100000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : System.nanoTime();
+
+        SelfPlay simulator = new SelfPlay (levelA, levelB, games, seed);
+        long start = System.nanoTime ();
+        long[] tally = simulator.run(threads);
+        double seconds = (System.nanoTime () - start) / 1e9;
+
+        System.out.println ("Level " + levelA + " vs level " + levelB + ": " + games + " games on " +
+                            threads + " thread(s), seed " + seed);
+        System.out.printf ("Level %d wins %12d %7.2f%%%n", levelA, tally[A_WINS], 100.0 * tally[A_WINS] / games);
+        System.out.printf ("Draws        %12d %7.2f%%%n", tally[DRAWS], 100.0 * tally[DRAWS] / games);
+        System.out.printf ("Level %d wins %12d %7.2f%%%n", levelB, tally[B_WINS], 100.0 * tally[B_WINS] / games);
+        System.out.printf ("Games per second: %.1f%n", games / seconds);
+        System.out.printf ("Mean think time per move: level %d %.2f us, level %d %.2f us%n",
+                           levelA, tally[A_NANOS] / 1e3 / Math.max(1, tally[A_MOVES]),
+                           levelB, tally[B_NANOS] / 1e3 / Math.max(1, tally[B_MOVES]));
+    }
+
+    /**
+     * Creates a simulator
+     *
+     * @param   levelA  behavior level of side A
+     * @param   levelB  behavior level of side B
+     * @param   games   number of games to play
+     * @param   seed    seed of the first game
+     */
+    public SelfPlay (int levelA, int levelB, long games, long seed) {
+        this.levelA = levelA;
+        this.levelB = levelB;
+        this.games = games;
+        this.seed = seed;
+    }
+
+    /**
+     * Plays every game
+     *
+     * @param   threads     number of threads to play on
+     *
+     * @return  the totals of all games: wins of A, draws, wins of B, then
+     *          think time in nanoseconds and number of moves of A and of B
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads
+     * @throws ExecutionException if a game failed
+     */
+    public long[] run (int threads) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> workers = new ArrayList<> ();
+        long[] total = new long[7];
+
+        next.set(0);
+        for (int i = 0; i < threads; i++)
+            workers.add(pool.submit(this::work));
+
+        try {
+            for (Future<long[]> worker : workers) {
+                long[] tally = worker.get();
+                for (int i = 0; i < total.length; i++)
+                    total[i] += tally[i];
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        return total;
+    }
+
+    /**
+     * Plays batches of games on the calling thread until every game is taken
+     *
+     * @return the totals of the games played
+     */
+    private long[] work () {
+        TicTacToe a = new TicTacToe ();
+        TicTacToe b = new TicTacToe ();
+        long[] tally = new long[7];
+
+        a.setAILevel(levelA);
+        b.setAILevel(levelB);
+        for (long first = next.getAndAdd(BATCH); first < games; first = next.getAndAdd(BATCH))
+            for (long game = first; game < Math.min(games, first + BATCH); game++)
+                play(game, a, b, tally);
+
+        return tally;
+    }
+
+    /**
+     * Plays a single game. Side A has the first move in even games.
+     *
+     * @param   game    index of the game
+     * @param   a       game of side A
+     * @param   b       game of side B
+     * @param   tally   totals to add the result and think times to
+     */
+    private void play (long game, TicTacToe a, TicTacToe b, long[] tally) {
+        boolean AFirst = (game & 1) == 0;
+        TicTacToe mover = AFirst ? a : b;
+        // number of turns in a row where no piece was placed
+        int passes = 0;
+
+        a.resetBoard();
+        b.resetBoard();
+        a.setGamePieces(AFirst);
+        b.setGamePieces(!AFirst);
+        a.setSeed(seed + game);
+        b.setSeed(~(seed + game));
+
+        while (true) {
+            TicTacToe other = mover == a ? b : a;
+            long start = System.nanoTime ();
+
+            mover.pickAIMove();
+            tally[mover == a ? A_NANOS : B_NANOS] += System.nanoTime () - start;
+            tally[mover == a ? A_MOVES : B_MOVES]++;
+
+            // level 3 places no piece when every move loses, the turn passes like in the Controller
+            int cell = mover.getLastMove();
+            passes = cell == -1 ? passes + 1 : 0;
+            if (cell != -1)
+                other.play(cell / TicTacToe.SIZE, cell % TicTacToe.SIZE, false);
+
+            if (mover.getStatus() == GameStatus.AI_WIN) {
+                tally[mover == a ? A_WINS : B_WINS]++;
+                return;
+            }
+            if (mover.getStatus() == GameStatus.DRAW || passes > 1) {
+                tally[DRAWS]++;
+                return;
+            }
+            mover = other;
+        }
+    }
+}
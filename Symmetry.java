@@ -0,0 +1,135 @@
+/**
+ * The 8 symmetries (rotations and reflections) of the square TicTacToe board.
+ * Positions that map onto each other have the same minimax value, so the
+ * search only needs to look at one of them, and caches and precomputed tables
+ * only need to store the canonical one.
+ */
+public class Symmetry {
+    /**
+     * Number of symmetries of the square board, index 0 is the identity
+     */
+    public static final int COUNT = 8;
+    /**
+     * Tile each tile moves to under each symmetry: PERM[t][cell]
+     */
+    public static final int[][] PERM = new int[COUNT][BitBoard.CELLS];
+    /**
+     * Inverse of PERM, maps a tile of the transformed board back
+     */
+    public static final int[][] INVERSE = new int[COUNT][BitBoard.CELLS];
+    /**
+     * Transformed bitmask of every possible set of tiles: MASKS[t][mask]
+     */
+    private static final int[][] MASKS = new int[COUNT][1 << BitBoard.CELLS];
+    /**
+     * Tiles that do not need to be searched for a given set of symmetries
+     * leaving the position unchanged, as an equivalent lower tile is searched
+     */
+    private static final int[] REDUNDANT = new int[1 << COUNT];
+
+    static {
+        int last = TicTacToe.SIZE - 1;
+
+        for (int row = 0; row < TicTacToe.SIZE; row++)
+            for (int col = 0; col < TicTacToe.SIZE; col++) {
+                int cell = row * TicTacToe.SIZE + col;
+
+                PERM[0][cell] = row * TicTacToe.SIZE + col;                 // identity
+                PERM[1][cell] = col * TicTacToe.SIZE + last - row;          // rotate 90
+                PERM[2][cell] = (last - row) * TicTacToe.SIZE + last - col; // rotate 180
+                PERM[3][cell] = (last - col) * TicTacToe.SIZE + row;        // rotate 270
+                PERM[4][cell] = row * TicTacToe.SIZE + last - col;          // mirror left to right
+                PERM[5][cell] = (last - row) * TicTacToe.SIZE + col;        // mirror top to bottom
+                PERM[6][cell] = col * TicTacToe.SIZE + row;                 // left diagonal
+                PERM[7][cell] = (last - col) * TicTacToe.SIZE + last - row; // right diagonal
+            }
+
+        for (int t = 0; t < COUNT; t++) {
+            for (int cell = 0; cell < BitBoard.CELLS; cell++)
+                INVERSE[t][PERM[t][cell]] = cell;
+
+            for (int mask = 1; mask < 1 << BitBoard.CELLS; mask++) {
+                int low = Integer.numberOfTrailingZeros(mask);
+                MASKS[t][mask] = MASKS[t][mask & (mask - 1)] | 1 << PERM[t][low];
+            }
+        }
+
+        for (int group = 0; group < 1 << COUNT; group++)
+            for (int t = 0; t < COUNT; t++)
+                if ((group & 1 << t) != 0)
+                    for (int cell = 0; cell < BitBoard.CELLS; cell++)
+                        if (PERM[t][cell] < cell)
+                            REDUNDANT[group] |= 1 << cell;
+    }
+
+    /**
+     * Applies a symmetry to a set of tiles
+     *
+     * @param   mask    bitmask of tiles
+     * @param   t       index of the symmetry
+     *
+     * @return  the bitmask of the transformed tiles
+     */
+    public static int transform (int mask, int t) {
+        return MASKS[t][mask];
+    }
+
+    /**
+     * Gets the symmetries that leave a position unchanged
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return  bit t is set if symmetry t maps the position onto itself
+     */
+    public static int stabilizer (int ai, int player) {
+        int group = 1;
+
+        for (int t = 1; t < COUNT; t++)
+            if (MASKS[t][ai] == ai && MASKS[t][player] == player)
+                group |= 1 << t;
+
+        return group;
+    }
+
+    /**
+     * Removes the moves that lead to a position symmetric to the one reached
+     * by a lower tile. Of each set of equivalent moves the lowest (first in
+     * row-major order) is kept.
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return  the bitmask of empty tiles worth searching
+     */
+    public static int uniqueMoves (int ai, int player) {
+        int empty = ~(ai | player) & BitBoard.FULL;
+
+        return empty & ~REDUNDANT[stabilizer(ai, player)];
+    }
+
+    /**
+     * Gets the canonical representative of a position: of its 8 symmetric
+     * versions the one with the lowest (AI, Player) bitmasks
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return  the symmetry index mapping the position onto its canonical form
+     */
+    public static int canonical (int ai, int player) {
+        int best = 0;
+        long bestCode = (long) ai << BitBoard.CELLS | player;
+
+        for (int t = 1; t < COUNT; t++) {
+            long code = (long) MASKS[t][ai] << BitBoard.CELLS | MASKS[t][player];
+
+            if (code < bestCode) {
+                bestCode = code;
+                best = t;
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Offline generator of the perfect play table used by behavior level 3.
+ * Solves every reachable position where the AI is to move with the live
+ * level 3 search, stores each canonical position once, then checks the
+ * written table against the live search.
+ *
+ * Usage: java TableGenerator [verify] [path]
+ */
+public class TableGenerator {
+    /**
+     * Canonical positions with the AI to move, as AI << CELLS | Player
+     */
+    private Set<Integer> canonical = new TreeSet<> ();
+    /**
+     * Every reachable position with the AI to move, as AI << CELLS | Player
+     */
+    private Set<Integer> reachable = new TreeSet<> ();
+    /**
+     * Solved results and distances of visited positions
+     */
+    private Map<Long, Integer> solved = new HashMap<> ();
+
+    public static void main (String[] args) throws IOException {
+        boolean verifyOnly = args.length > 0 && args[0].equals("verify");
+        String path = args.length > (verifyOnly ? 1 : 0) ? args[args.length - 1] : PerfectPlayTable.PATH;
+        TableGenerator generator = new TableGenerator ();
+
+        // the AI can either have the first or the second move
+        generator.collect(0, 0, true);
+        generator.collect(0, 0, false);
+
+        if (!verifyOnly) {
+            generator.generate(path);
+            System.out.println ("Wrote " + generator.canonical.size () + " canonical positions to " + path);
+        }
+
+        int mismatches = generator.verify(PerfectPlayTable.map(path));
+        System.out.println ("Verified " + generator.reachable.size () + " positions, " + mismatches + " mismatch(es)");
+        if (mismatches > 0)
+            System.exit (1);
+    }
+
+    /**
+     * Visits every position reachable from the given one, recording the
+     * positions where the AI is to move and the game is not over
+     *
+     * @param   ai          AI bitmask
+     * @param   player      Player bitmask
+     * @param   AITurn      indicator if the AI is to move
+     */
+    private void collect (int ai, int player, boolean AITurn) {
+        if (BitBoard.hasWon(ai) || BitBoard.hasWon(player) || (ai | player) == BitBoard.FULL)
+            return;
+
+        if (AITurn) {
+            int t = Symmetry.canonical(ai, player);
+
+            // skip positions already visited through another move order
+            if (!reachable.add(ai << BitBoard.CELLS | player))
+                return;
+            canonical.add(Symmetry.transform(ai, t) << BitBoard.CELLS | Symmetry.transform(player, t));
+        }
+
+        for (int empty = ~(ai | player) & BitBoard.FULL; empty != 0; empty &= empty - 1) {
+            int bit = empty & -empty;
+
+            if (AITurn)
+                collect(ai | bit, player, false);
+            else
+                collect(ai, player | bit, true);
+        }
+    }
+
+    /**
+     * Creates a game with the given position on its board
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     *
+     * @return  a level 3 game that always runs the live search
+     */
+    private static TicTacToe gameOf (int ai, int player) {
+        TicTacToe game = new TicTacToe ();
+
+        game.setGamePieces(Integer.bitCount(ai) == Integer.bitCount(player));
+        game.setAILevel(3);
+        game.setLookupTable(null);
+        for (int cell = 0; cell < BitBoard.CELLS; cell++)
+            if ((ai & 1 << cell) != 0)
+                game.getBoard()[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] = game.getAI();
+            else if ((player & 1 << cell) != 0)
+                game.getBoard()[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] = game.getPlayer();
+
+        return game;
+    }
+
+    /**
+     * Scores every move of every canonical position and writes the table
+     *
+     * @param   path    location of the table file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void generate (String path) throws IOException {
+        int count = canonical.size();
+        int[] ai = new int[count], player = new int[count], values = new int[count],
+              moves = new int[count], results = new int[count], distances = new int[count];
+        int i = 0;
+
+        for (int code : canonical) {
+            ai[i] = code >>> BitBoard.CELLS;
+            player[i] = code & BitBoard.FULL;
+
+            TicTacToe game = gameOf(ai[i], player[i]);
+            values[i] = Integer.MIN_VALUE;
+            for (int empty = ~(ai[i] | player[i]) & BitBoard.FULL; empty != 0; empty &= empty - 1) {
+                int cell = Integer.numberOfTrailingZeros(empty);
+                int eval = game.scoreMove(cell / TicTacToe.SIZE, cell % TicTacToe.SIZE);
+
+                // keep every tile sharing the best score, like the live search
+                // no tile is kept if every move loses
+                if (eval > values[i]) {
+                    values[i] = eval;
+                    moves[i] = 1 << cell;
+                } else if (eval == values[i] && moves[i] != 0)
+                    moves[i] |= 1 << cell;
+            }
+
+            int outcome = solve(ai[i], player[i], true);
+            results[i] = outcome >> 8;
+            distances[i] = outcome & 0xFF;
+            i++;
+        }
+
+        PerfectPlayTable.write(path, ai, player, values, moves, results, distances, count);
+    }
+
+    /**
+     * Solves a position under perfect play: the winner wins as soon as possible
+     * and the loser loses as late as possible
+     *
+     * @param   ai      AI bitmask
+     * @param   player  Player bitmask
+     * @param   AITurn  indicator if the AI is to move
+     *
+     * @return  the result for the AI (1 win | 0 draw | -1 loss) shifted left by
+     *          8 bits, plus the number of moves until the game ends
+     */
+    private int solve (int ai, int player, boolean AITurn) {
+        if (BitBoard.hasWon(ai))
+            return 1 << 8;
+        if (BitBoard.hasWon(player))
+            return -1 << 8;
+        if ((ai | player) == BitBoard.FULL)
+            return 0;
+
+        long key = (long) ai << 32 | (long) player << 1 | (AITurn ? 1 : 0);
+        Integer known = solved.get(key);
+        if (known != null)
+            return known;
+
+        int best = 0;
+        int bestRank = Integer.MIN_VALUE;
+        for (int empty = ~(ai | player) & BitBoard.FULL; empty != 0; empty &= empty - 1) {
+            int bit = empty & -empty;
+            int child = AITurn ? solve(ai | bit, player, false) : solve(ai, player | bit, true);
+            int result = child >> 8;
+            int distance = (child & 0xFF) + 1;
+            int outcome = AITurn ? result : -result;
+            // rank from the mover's side: win fast, lose slow
+            int rank = outcome > 0 ? 100 - distance : outcome < 0 ? distance - 100 : 0;
+
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = result << 8 | distance;
+            }
+        }
+
+        solved.put(key, best);
+        return best;
+    }
+
+    /**
+     * Compares the table move of every reachable position with the move
+     * chosen by the live level 3 search
+     *
+     * @param   lookup  the table to check
+     *
+     * @return  the number of positions where the moves differ
+     */
+    private int verify (PerfectPlayTable lookup) {
+        int mismatches = 0;
+
+        for (int code : reachable) {
+            int ai = code >>> BitBoard.CELLS;
+            int player = code & BitBoard.FULL;
+            TicTacToe game = gameOf(ai, player);
+
+            game.pickAIMove();
+            int live = -1;
+            for (int cell = 0; cell < BitBoard.CELLS; cell++)
+                if (game.getBoard()[cell / TicTacToe.SIZE][cell % TicTacToe.SIZE] == game.getAI() &&
+                    (ai & 1 << cell) == 0)
+                    live = cell;
+
+            if (!lookup.probe(ai, player) || lookup.getMove() != live)
+                mismatches++;
+        }
+
+        return mismatches;
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * Endgame tablebase of an N x N board with k in a row to win: the perfect play
+ * result and distance to the result of every position with at least a given
+ * number of pieces. Generated backward from the finished games by
+ * TablebaseGenerator and memory-mapped by the searches, which stop at any
+ * position the table holds.
+ *
+ * Positions are stored from the side to move, so one entry serves the AI and
+ * the Player alike. The index of a position is the base 3 number with digit
+ * (row * size + col) 0 for an empty tile, 1 for a piece of the side to move
+ * and 2 for a piece of the other side, so there is one byte per number below
+ * 3^(size * size) and boards up to 4x4 fit into a single mapping.
+ *
+ * File layout (big-endian): magic, version, size, length and lowest (the
+ * fewest pieces of a solved position, size * size + 1 while nothing is
+ * solved) as ints, followed by one byte per index: result (bits 7-6: 0 not a
+ * solved position, WIN, LOSS or DRAW for the side to move) and distance
+ * (bits 5-0, number of moves until the game ends under perfect play).
+ *
+ * A probe keeps the entry it found, so threads probing the same table each
+ * use their own view() of it.
+ */
+public class Tablebase {
+    /**
+     * First int of the file
+     */
+    public static final int MAGIC = 0x54545442; // "TTTB"
+    /**
+     * Format version of the file
+     */
+    public static final int VERSION = 1;
+    /**
+     * Size of the file header in bytes
+     */
+    public static final int HEADER_BYTES = 20;
+    /**
+     * Offset of the lowest solved piece count in the header
+     */
+    public static final int LOWEST_OFFSET = 16;
+    /**
+     * Result of a position the side to move wins
+     */
+    public static final int WIN = 1;
+    /**
+     * Result of a position the side to move loses
+     */
+    public static final int LOSS = 2;
+    /**
+     * Result of a drawn position
+     */
+    public static final int DRAW = 3;
+    /**
+     * Largest number of tiles of a board, so the table fits into one mapping
+     */
+    public static final int MAX_CELLS = 19;
+    /**
+     * Mapped contents of the table file
+     */
+    private ByteBuffer buffer;
+    /**
+     * Row and column length of the board
+     */
+    private int size;
+    /**
+     * Number of pieces in a row that win
+     */
+    private int length;
+    /**
+     * Fewest pieces of a solved position
+     */
+    private int lowest;
+    /**
+     * Entry found by the last successful probe
+     */
+    private int found;
+
+    /**
+     * Creates a table over already loaded or mapped contents
+     *
+     * @param   buffer  contents of a table file
+     *
+     * @throws IOException if the contents are not a tablebase of this version
+     */
+    public Tablebase (ByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            throw new IOException ("Not a version " + VERSION + " tablebase");
+
+        this.buffer = buffer;
+        size = buffer.getInt(8);
+        length = buffer.getInt(12);
+        lowest = buffer.getInt(LOWEST_OFFSET);
+        if (size * size > MAX_CELLS || buffer.capacity() != HEADER_BYTES + positions(size * size))
+            throw new IOException ("Tablebase of " + size + "x" + size + " has the wrong length");
+    }
+
+    /**
+     * Gets a new view of this table for another thread. Views share the
+     * mapped contents and keep their own last probe.
+     *
+     * @return a view of the contents of this table
+     */
+    public Tablebase view () {
+        try {
+            return new Tablebase (buffer.duplicate());
+        } catch (IOException e) {
+            // the contents were checked when this table was created
+            throw new UncheckedIOException (e);
+        }
+    }
+
+    /**
+     * Memory-maps a table file
+     *
+     * @param   path    location of the table file
+     *
+     * @return  the mapped table
+     *
+     * @throws IOException if the file cannot be read or is not a tablebase
+     */
+    public static Tablebase map (String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return new Tablebase (channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Gets the default location of the table of a board
+     *
+     * @param   size    row and column length of the board
+     * @param   length  number of pieces in a row that win
+     *
+     * @return  the path of the table file, next to the other game resources
+     */
+    public static String pathOf (int size, int length) {
+        return "tables/" + size + "x" + size + "k" + length + ".tb";
+    }
+
+    /**
+     * Gets the number of indexes of a board
+     *
+     * @param   cells   number of tiles of the board
+     *
+     * @return  3^cells
+     */
+    public static int positions (int cells) {
+        int count = 1;
+
+        for (int cell = 0; cell < cells; cell++)
+            count *= 3;
+
+        return count;
+    }
+
+    /**
+     * Gets the row and column length of the board
+     *
+     * @return the size of the board
+     */
+    public int getSize () {
+        return size;
+    }
+
+    /**
+     * Gets the number of pieces in a row that win
+     *
+     * @return the win length
+     */
+    public int getLength () {
+        return length;
+    }
+
+    /**
+     * Gets the fewest pieces of a position in the table. A table whose
+     * generation was stopped holds the positions solved so far.
+     *
+     * @return the piece count, size * size + 1 if no position is solved
+     */
+    public int getLowest () {
+        return lowest;
+    }
+
+    /**
+     * Checks if the table is of a board
+     *
+     * @param   board   the board
+     *
+     * @return  true if the size and win length of the board are the table's
+     */
+    public boolean fits (GridBoard board) {
+        return board.getSize() == size && board.getLength() == length;
+    }
+
+    /**
+     * Looks up a position of a board the table fits. On a hit the entry can be
+     * read through getResult() and getDistance() until the next probe.
+     *
+     * @param   board   the board
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  true if the position is solved in the table, otherwise false
+     */
+    public boolean probe (GridBoard board, boolean isAI) {
+        if (board.getPieces() < lowest)
+            return false;
+
+        byte mine = isAI ? GridBoard.AI : GridBoard.PLAYER;
+        int index = 0;
+
+        for (int cell = board.getCells() - 1; cell >= 0; cell--) {
+            byte tile = board.get(cell);
+            index = index * 3 + (tile == GridBoard.EMPTY ? 0 : tile == mine ? 1 : 2);
+        }
+
+        found = buffer.get(HEADER_BYTES + index);
+        return found != 0;
+    }
+
+    /**
+     * Gets the result of the last found position
+     *
+     * @return WIN, LOSS or DRAW for the side to move
+     */
+    public int getResult () {
+        return (found >> 6) & 3;
+    }
+
+    /**
+     * Gets the distance to the result of the last found position
+     *
+     * @return the number of moves left until the game ends under perfect play
+     */
+    public int getDistance () {
+        return found & 0x3F;
+    }
+}
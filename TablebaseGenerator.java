@@ -0,0 +1,294 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Offline retrograde generator of a Tablebase. Solves the positions one piece
+ * count at a time, from the full board down: a position is lost if the side
+ * that just moved filled a window and drawn if the board is full, otherwise
+ * its value follows from the positions one piece further, which are already
+ * solved. Each piece count is split over a pool of threads.
+ *
+ * The table is generated in place in the memory-mapped file, and the header
+ * records the lowest piece count solved after every count, so a stopped run
+ * picks up where it left off, and the file of a stopped run is already a
+ * usable endgame table of the counts it solved.
+ *
+ * Usage: java TablebaseGenerator size length [lowest] [threads] [path]
+ */
+public class TablebaseGenerator {
+    /**
+     * Number of index ranges each piece count is split into per thread
+     */
+    public static final int CHUNKS_PER_THREAD = 8;
+    /**
+     * Row and column length of the board
+     */
+    private int size;
+    /**
+     * Number of pieces in a row that win
+     */
+    private int length;
+    /**
+     * Number of tiles of the board
+     */
+    private int cells;
+    /**
+     * Masks of the winning windows
+     */
+    private int[] lines;
+    /**
+     * Powers of 3, the index of a piece of the side to move on each tile
+     */
+    private int[] powers;
+    /**
+     * Mapped contents of the table file
+     */
+    private MappedByteBuffer buffer;
+
+    public static void main (String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 2) {
+            System.out.println ("Usage: java TablebaseGenerator size length [lowest] [threads] [path]");
+            System.exit (1);
+        }
+
+        int size = Integer.parseInt(args[0]);
+        int length = Integer.parseInt(args[1]);
+        int lowest = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        String path = args.length > 4 ? args[4] : Tablebase.pathOf(size, length);
+
+        TablebaseGenerator generator = new TablebaseGenerator (size, length);
+        generator.open(path);
+        generator.generate(lowest, threads);
+    }
+
+    /**
+     * Creates a generator
+     *
+     * @param   size    row and column length of the board
+     * @param   length  number of pieces in a row that win
+     *
+     * @throws IllegalArgumentException if the board has more than Tablebase.MAX_CELLS tiles
+     *         or the length is not between 1 and the size
+     */
+    public TablebaseGenerator (int size, int length) {
+        if (size * size > Tablebase.MAX_CELLS)
+            throw new IllegalArgumentException ("No tablebase for boards of more than " + Tablebase.MAX_CELLS + " tiles");
+
+        LineTable table = LineTable.of(size, length);
+
+        this.size = size;
+        this.length = length;
+        cells = size * size;
+        lines = new int[table.getLineCount()];
+        for (int line = 0; line < lines.length; line++)
+            for (int cell : table.getLine(line))
+                lines[line] |= 1 << cell;
+        powers = new int[cells];
+        for (int cell = 0; cell < cells; cell++)
+            powers[cell] = cell == 0 ? 1 : powers[cell - 1] * 3;
+    }
+
+    /**
+     * Maps the table file, creating it if it does not exist yet. An existing
+     * file of the same board is resumed.
+     *
+     * @param   path    location of the table file
+     *
+     * @throws IOException if the file cannot be mapped or is a table of another board
+     */
+    public void open (String path) throws IOException {
+        Path file = Paths.get(path);
+        long bytes = Tablebase.HEADER_BYTES + (long) Tablebase.positions(cells);
+
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        boolean resume = Files.exists(file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            if (resume && channel.size() != bytes)
+                throw new IOException (path + " is not a tablebase of " + size + "x" + size);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+
+        if (!resume) {
+            buffer.putInt(0, Tablebase.MAGIC);
+            buffer.putInt(4, Tablebase.VERSION);
+            buffer.putInt(8, size);
+            buffer.putInt(12, length);
+            buffer.putInt(Tablebase.LOWEST_OFFSET, cells + 1);
+            buffer.force();
+        } else if (buffer.getInt(0) != Tablebase.MAGIC || buffer.getInt(4) != Tablebase.VERSION ||
+                   buffer.getInt(8) != size || buffer.getInt(12) != length)
+            throw new IOException (path + " is not a version " + Tablebase.VERSION + " tablebase of " +
+                                   size + "x" + size + ", " + length + " in a row");
+    }
+
+    /**
+     * Solves the piece counts not solved yet, down to the given one. The table
+     * is flushed to the file after every count.
+     *
+     * @param   lowest  fewest pieces of a position to solve
+     * @param   threads number of threads to solve each count with
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads
+     * @throws ExecutionException if a thread failed
+     */
+    public void generate (int lowest, int threads) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int positions = Tablebase.positions(cells);
+        int chunks = threads * CHUNKS_PER_THREAD;
+
+        try {
+            for (int pieces = buffer.getInt(Tablebase.LOWEST_OFFSET) - 1; pieces >= lowest; pieces--) {
+                long start = System.nanoTime ();
+                List<Future<Long>> results = new ArrayList<> ();
+                long solved = 0;
+
+                for (int chunk = 0; chunk < chunks; chunk++) {
+                    int from = (int) ((long) positions * chunk / chunks);
+                    int to = (int) ((long) positions * (chunk + 1) / chunks);
+                    int count = pieces;
+                    results.add(pool.submit(() -> solve(count, from, to)));
+                }
+                for (Future<Long> result : results)
+                    solved += result.get();
+
+                // the entries have to be on disk before the header says they are solved
+                buffer.force();
+                buffer.putInt(Tablebase.LOWEST_OFFSET, pieces);
+                buffer.force();
+                System.out.printf ("%2d pieces: %10d positions, %.2f s%n", pieces, solved,
+                                   (System.nanoTime () - start) / 1e9);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Solves the positions of a range of indexes with the given number of
+     * pieces, reading the solved positions with one piece more
+     *
+     * @param   pieces  number of pieces of the positions to solve
+     * @param   from    first index of the range
+     * @param   to      index after the range
+     *
+     * @return  the number of positions solved
+     */
+    private long solve (int pieces, int from, int to) {
+        int[] digits = new int[cells];
+        int mine = 0, other = 0;
+        long solved = 0;
+
+        for (int cell = 0, rest = from; cell < cells; cell++, rest /= 3) {
+            digits[cell] = rest % 3;
+            if (digits[cell] == 1)
+                mine |= 1 << cell;
+            else if (digits[cell] == 2)
+                other |= 1 << cell;
+        }
+
+        for (int index = from; index < to; index++) {
+            int mineCount = Integer.bitCount(mine);
+            int otherCount = Integer.bitCount(other);
+
+            // the side to move has as many pieces as the other side, or one less
+            if (mineCount + otherCount == pieces && (otherCount == mineCount || otherCount == mineCount + 1) &&
+                !hasWon(mine)) {
+                buffer.put(Tablebase.HEADER_BYTES + index, (byte) value(index, mine, other, pieces));
+                solved++;
+            }
+
+            // next index: add one to the base 3 digits
+            for (int cell = 0; cell < cells; cell++) {
+                int bit = 1 << cell;
+
+                if (digits[cell] == 0) {
+                    digits[cell] = 1;
+                    mine |= bit;
+                    break;
+                } else if (digits[cell] == 1) {
+                    digits[cell] = 2;
+                    mine &= ~bit;
+                    other |= bit;
+                    break;
+                }
+                digits[cell] = 0;
+                other &= ~bit;
+            }
+        }
+
+        return solved;
+    }
+
+    /**
+     * Solves a position from the solved positions one piece further
+     *
+     * @param   index   index of the position
+     * @param   mine    pieces of the side to move
+     * @param   other   pieces of the other side
+     * @param   pieces  number of pieces of the position
+     *
+     * @return  the entry of the position
+     */
+    private int value (int index, int mine, int other, int pieces) {
+        if (hasWon(other))
+            return Tablebase.LOSS << 6;
+        if (pieces == cells)
+            return Tablebase.DRAW << 6;
+
+        // the children see the sides swapped, the piece played becomes the other side's
+        int swapped = 0;
+        for (int cell = 0; cell < cells; cell++)
+            if ((mine & 1 << cell) != 0)
+                swapped += 2 * powers[cell];
+            else if ((other & 1 << cell) != 0)
+                swapped += powers[cell];
+
+        int fastestWin = Integer.MAX_VALUE;
+        int slowestLoss = 0;
+        boolean draw = false;
+
+        for (int empty = ~(mine | other) & ((1 << cells) - 1); empty != 0; empty &= empty - 1) {
+            int cell = Integer.numberOfTrailingZeros(empty);
+            int child = buffer.get(Tablebase.HEADER_BYTES + swapped + 2 * powers[cell]);
+            int distance = (child & 0x3F) + 1;
+
+            switch ((child >> 6) & 3) {
+                // the other side loses after this move
+                case Tablebase.LOSS: fastestWin = Math.min(fastestWin, distance); break;
+                case Tablebase.DRAW: draw = true; break;
+                case Tablebase.WIN: slowestLoss = Math.max(slowestLoss, distance); break;
+                default: throw new IllegalStateException ("Position " + index + " has an unsolved move");
+            }
+        }
+
+        if (fastestWin != Integer.MAX_VALUE)
+            return Tablebase.WIN << 6 | fastestWin;
+        if (draw)
+            return Tablebase.DRAW << 6 | (cells - pieces);
+
+        return Tablebase.LOSS << 6 | slowestLoss;
+    }
+
+    /**
+     * Checks if a set of pieces fills one of the winning windows
+     *
+     * @param   pieces  bitmask of the pieces to check
+     *
+     * @return  true if the pieces fill a window
+     */
+    private boolean hasWon (int pieces) {
+        for (int line : lines)
+            if ((pieces & line) == line)
+                return true;
+
+        return false;
+    }
+}
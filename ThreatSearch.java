@@ -0,0 +1,390 @@
+/**
+ * Threat-space search for k in a row on large boards: finds the moves that
+ * are forced, or that force a win, by looking at the windows of the line
+ * table instead of searching every move.
+ *
+ * A four is a window holding k - 1 pieces of a side and no piece of the
+ * other, its empty tile wins on the next move; a three holds k - 2, so a move
+ * on one of its empty tiles makes a four. Only forcing moves are searched:
+ * - a four must be answered on its empty tile, so a move that makes a four
+ *   leaves the other side a single reply, and one that makes two fours with
+ *   different empty tiles (a double threat) wins;
+ * - a victory by continuous fours (VCF) is a sequence of such moves ending
+ *   in a double threat, the other side never getting a four of its own;
+ * - a victory by continuous threats (VCT) also plays moves that make a VCF
+ *   if left alone, such as an open three, and checks every reply: a reply
+ *   the VCF still wins against is refuted by replaying it, the others are
+ *   searched again, up to VCT_DEPTH such moves deep.
+ *
+ * Every win found is a proof against any defense, so the move can be played
+ * without a search. A search gives up after NODE_LIMIT positions.
+ */
+public class ThreatSearch {
+    /**
+     * Number of moves making a VCF that a VCT may play
+     */
+    public static final int VCT_DEPTH = 2;
+    /**
+     * Number of positions a search may visit before giving up
+     */
+    public static final int NODE_LIMIT = 100000;
+
+    /**
+     * Board being searched
+     */
+    private GridBoard position;
+    /**
+     * Shared windows of the board
+     */
+    private LineTable table;
+    /**
+     * Side looking for a win
+     */
+    private boolean attacker;
+    /**
+     * Number of positions visited by the current search
+     */
+    private int nodes;
+    /**
+     * Indicator if the move found last forces a win
+     */
+    private boolean winning;
+    /**
+     * Tiles of the VCF found last: attacker and forced replies alternating,
+     * ending with the attacker's double threat
+     */
+    private int[] line = new int[0];
+    /**
+     * Number of tiles of the VCF found last
+     */
+    private int lineLength;
+    /**
+     * Tile lists of each level of the search
+     */
+    private int[][] lists = new int[0][];
+    /**
+     * Mark of the tiles already listed, equal to stamp when listed
+     */
+    private int[] marks = new int[0];
+    /**
+     * Current mark value
+     */
+    private int stamp;
+
+    /**
+     * Gets the number of positions visited by the last search
+     *
+     * @return the node count
+     */
+    public int getNodes () {
+        return nodes;
+    }
+
+    /**
+     * Checks if the move found by the last search forces a win, rather than
+     * only blocking a four of the other side
+     *
+     * @return true if the side to move wins with the move
+     */
+    public boolean isWinning () {
+        return winning;
+    }
+
+    /**
+     * Finds the forced move of a side: a tile that wins at once, the only tile
+     * that stops the other side from winning at once, or the first move of a
+     * forced win by continuous fours or threats
+     *
+     * @param   board   the board, with no side having won
+     * @param   isAI    indicator if the AI is to move
+     *
+     * @return  the index of the tile, -1 if no move is forced or the other
+     *          side wins whatever is played
+     */
+    public int find (GridBoard board, boolean isAI) {
+        int cells = board.getCells();
+
+        if (marks.length != cells) {
+            marks = new int[cells];
+            // two lists per VCF move, four per VCT move, two for the root
+            lists = new int[2 * cells + 4 * VCT_DEPTH + 8][cells];
+            line = new int[cells];
+        }
+        position = board;
+        table = board.getTable();
+        attacker = isAI;
+        nodes = 0;
+        winning = true;
+
+        int[] wins = lists[0];
+        if (fours(isAI, wins) > 0)
+            return wins[0];
+
+        int[] blocks = lists[1];
+        int threats = fours(!isAI, blocks);
+        if (threats <= 1 && vct(VCT_DEPTH, 2))
+            return line[0];
+
+        winning = false;
+        return threats == 1 ? blocks[0] : -1;
+    }
+
+    /**
+     * Searches for a victory by continuous fours of the attacker, who is to
+     * move and has no four. On success the moves are in line.
+     *
+     * @param   ply     index into line of the attacker's move
+     * @param   level   first free tile list
+     * @param   reply   the defender's last move if it blocked a four of the
+     *                  attacker, -1 to look for fours of the defender anywhere
+     *
+     * @return  true if the attacker wins by continuous fours
+     */
+    private boolean vcf (int ply, int level, int reply) {
+        if (++nodes > NODE_LIMIT)
+            return false;
+
+        int[] candidates = lists[level];
+        int[] gains = lists[level + 1];
+        // a four of the defender has to be blocked, and the block has to make a four too;
+        // after a forced block only the block itself can have made one
+        int count = reply == -1 ? fours(!attacker, candidates) : gains(reply, !attacker, candidates);
+
+        if (count > 1)
+            return false;
+        if (count == 0)
+            count = threes(attacker, candidates);
+
+        for (int i = 0; i < count; i++) {
+            int cell = candidates[i];
+
+            position.play(cell, attacker);
+            int gained = gains(cell, attacker, gains);
+            line[ply] = cell;
+
+            if (gained >= 2) {
+                position.undo(cell, attacker);
+                lineLength = ply + 1;
+                return true;
+            }
+            if (gained == 1) {
+                int block = gains[0];
+
+                position.play(block, !attacker);
+                line[ply + 1] = block;
+                boolean won = vcf(ply + 2, level + 2, block);
+                position.undo(block, !attacker);
+
+                if (won) {
+                    position.undo(cell, attacker);
+                    return true;
+                }
+            }
+            position.undo(cell, attacker);
+        }
+
+        return false;
+    }
+
+    /**
+     * Searches for a victory by continuous threats of the attacker, who is to
+     * move and has no four: a VCF, or a move after which the attacker would
+     * have a VCF if the defender passed and that wins against every reply.
+     * On success line[0] is the first move.
+     *
+     * @param   depth   number of such moves that may still be played
+     * @param   level   first free tile list
+     *
+     * @return  true if the attacker wins by continuous threats
+     */
+    private boolean vct (int depth, int level) {
+        if (vcf(0, level, -1))
+            return true;
+        if (depth == 0 || nodes > NODE_LIMIT)
+            return false;
+
+        int[] candidates = lists[level];
+        int[] replies = lists[level + 1];
+        int[] threat = lists[level + 2];
+        int[] forcing = lists[level + 3];
+        int count;
+
+        if (fours(!attacker, candidates) > 0)
+            return false;
+        count = twos(attacker, candidates);
+
+        for (int i = 0; i < count && nodes <= NODE_LIMIT; i++) {
+            int cell = candidates[i];
+            boolean refuted = true;
+
+            position.play(cell, attacker);
+            // moves making a four are searched by vcf(), others have to threaten one
+            if (gains(cell, attacker, forcing) > 0 || !vcf(0, level + 4, -1)) {
+                position.undo(cell, attacker);
+                continue;
+            }
+
+            // the threat as a line to replay against every reply
+            int length = lineLength;
+            System.arraycopy(line, 0, threat, 0, length);
+
+            int replyCount = 0;
+            int end = position.getCells();
+            for (int reply = position.firstEmpty(); reply != end; reply = position.nextEmpty(reply))
+                replies[replyCount++] = reply;
+
+            for (int r = 0; r < replyCount && refuted; r++) {
+                int reply = replies[r];
+
+                position.play(reply, !attacker);
+                refuted = replay(threat, length, reply, level + 4) || vct(depth - 1, level + 4);
+                position.undo(reply, !attacker);
+            }
+            position.undo(cell, attacker);
+
+            if (refuted && nodes <= NODE_LIMIT) {
+                line[0] = cell;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if a VCF found before still wins as it is after another move
+     *
+     * @param   threat  the tiles of the VCF
+     * @param   length  number of tiles of the VCF
+     * @param   reply   the defender's move, the VCF was found without it
+     * @param   level   first free tile list
+     *
+     * @return  true if every attacker move is still empty and makes the same
+     *          four or a double threat, and the defender never has a four
+     */
+    private boolean replay (int[] threat, int length, int reply, int level) {
+        int[] blocks = lists[level];
+        int[] gains = lists[level + 1];
+        int played = 0;
+        boolean won = false;
+        // fours of the defender can only come from its own moves
+        int count = gains(reply, !attacker, blocks);
+
+        for (int ply = 0; ply < length; ply += 2) {
+            int cell = threat[ply];
+
+            nodes++;
+            if (position.get(cell) != GridBoard.EMPTY || count > 1 || (count == 1 && blocks[0] != cell))
+                break;
+
+            position.play(cell, attacker);
+            played++;
+            int gained = gains(cell, attacker, gains);
+            if (gained >= 2) {
+                won = true;
+                break;
+            }
+            if (gained != 1 || ply + 1 >= length || gains[0] != threat[ply + 1])
+                break;
+
+            position.play(threat[ply + 1], !attacker);
+            played++;
+            count = gains(threat[ply + 1], !attacker, blocks);
+        }
+
+        // take the replayed moves back
+        for (int i = played - 1; i >= 0; i--)
+            position.undo(threat[i], i % 2 == 0 ? attacker : !attacker);
+
+        return won;
+    }
+
+    /**
+     * Lists the tiles that win at once for a side: the empty tile of each of its fours
+     *
+     * @param   isAI    the side
+     * @param   list    receives the tiles
+     *
+     * @return  the number of tiles
+     */
+    private int fours (boolean isAI, int[] list) {
+        return windows(isAI, position.getLength() - 1, list);
+    }
+
+    /**
+     * Lists the tiles that make a four for a side: the empty tiles of its threes
+     *
+     * @param   isAI    the side
+     * @param   list    receives the tiles
+     *
+     * @return  the number of tiles
+     */
+    private int threes (boolean isAI, int[] list) {
+        return windows(isAI, position.getLength() - 2, list);
+    }
+
+    /**
+     * Lists the tiles that make a three for a side, the moves that may
+     * threaten a VCF
+     *
+     * @param   isAI    the side
+     * @param   list    receives the tiles
+     *
+     * @return  the number of tiles
+     */
+    private int twos (boolean isAI, int[] list) {
+        return position.getLength() < 3 ? 0 : windows(isAI, position.getLength() - 3, list);
+    }
+
+    /**
+     * Lists the empty tiles of the windows holding a number of pieces of a side
+     * and none of the other, each tile once
+     *
+     * @param   isAI    the side
+     * @param   pieces  number of pieces of the side, at least 1
+     * @param   list    receives the tiles
+     *
+     * @return  the number of tiles
+     */
+    private int windows (boolean isAI, int pieces, int[] list) {
+        int count = 0;
+
+        if (pieces < 1)
+            return 0;
+        stamp++;
+        for (int l = 0; l < table.getLineCount(); l++)
+            if (position.getCount(l, isAI) == pieces && position.getCount(l, !isAI) == 0)
+                for (int cell : table.getLine(l))
+                    if (position.get(cell) == GridBoard.EMPTY && marks[cell] != stamp) {
+                        marks[cell] = stamp;
+                        list[count++] = cell;
+                    }
+
+        return count;
+    }
+
+    /**
+     * Lists the tiles that win at once for a side after it played a tile: the
+     * empty tiles of its fours through that tile
+     *
+     * @param   cell    index of the tile just played
+     * @param   isAI    the side that played it
+     * @param   list    receives the tiles
+     *
+     * @return  the number of tiles, each counted once
+     */
+    private int gains (int cell, boolean isAI, int[] list) {
+        int count = 0;
+
+        stamp++;
+        for (int l : table.getCellLines(cell))
+            if (position.getCount(l, isAI) == position.getLength() - 1 && position.getCount(l, !isAI) == 0)
+                for (int tile : table.getLine(l))
+                    if (position.get(tile) == GridBoard.EMPTY && marks[tile] != stamp) {
+                        marks[tile] = stamp;
+                        list[count++] = tile;
+                    }
+
+        return count;
+    }
+}
@@ -5,14 +5,30 @@ public class TicTacToe {
      * Row and column length (3x3) for TicTacToe board
      */
     public static final int SIZE = 3;
+    /**
+     * Number of behavior levels (0 - 5)
+     */
+    public static final int LEVELS = 6;
     /**
      * Symbol for empty tile
      */
     public static final char EMPTY = ' ';
     /**
-     * Depth counter (used in behavior level 4)
+     * Memory budget of the transposition table in bytes
+     */
+    public static final long TABLE_BYTES = 1 << 20;
+    /**
+     * Perfect play table shared by all games, null if it could not be mapped
+     */
+    private static final PerfectPlayTable PERFECT_PLAY = PerfectPlayTable.mapDefault ();
+    /**
+     * Pattern rules of behavior level 1, shared by all games
+     */
+    private static final RuleTable LEVEL1_RULES = RuleTable.loadDefault ();
+    /**
+     * Half width of the aspiration window around the previous score
      */
-    private static int ctr;
+    public static final int ASPIRATION = 2;
     /**
      * Behavior level value
      */
@@ -34,9 +50,148 @@ public class TicTacToe {
      * AI - true | Player - false
      */
     private boolean AIFirstMove;
+    /**
+     * Bitboard copy of the board searched by behavior levels 2-4
+     */
+    private BitBoard position;
+    /**
+     * Transposition table of searched positions (used in behavior level 3),
+     * kept across moves so positions searched earlier are not searched again
+     */
+    private TranspositionTable table;
+    /**
+     * Indicator if the search scores wins and losses by how soon they happen
+     * (behavior level 4), see terminalScore()
+     */
+    private boolean distance;
+    /**
+     * Precomputed level 3 moves, consulted before the live search
+     */
+    private PerfectPlayTable lookup;
+    /**
+     * Wall-clock budget of a level 3 search in milliseconds, 0 for no limit
+     */
+    private long timeLimit;
+    /**
+     * Node budget of a level 3 search, 0 for no limit
+     */
+    private long nodeLimit;
+    /**
+     * Number of nodes visited by the current search
+     */
+    private long nodes;
+    /**
+     * Value of nodes when the current budgeted search started
+     */
+    private long startNodes;
+    /**
+     * System.nanoTime() value at which the current search runs out of time
+     */
+    private long deadline;
+    /**
+     * Indicator if minimax() checks the search budget
+     */
+    private boolean budgeted;
+    /**
+     * Indicator if the budget ran out during the current iteration
+     */
+    private boolean aborted;
+    /**
+     * Depth of the deepest completed iteration of the last budgeted search
+     */
+    private int completedDepth;
+    /**
+     * Move ordering heuristics of the level 3 search
+     */
+    private MoveOrdering ordering;
+    /**
+     * Indicator if level 3 orders moves with the heuristics instead of row-major order
+     */
+    private boolean ordered;
+    /**
+     * Number of nodes cut off by alpha-beta pruning since the last resetStats()
+     */
+    private long cutoffs;
+    /**
+     * Number of cutoffs caused by the first move searched
+     */
+    private long firstCutoffs;
+    /**
+     * Number of transposition table hits of parallel search workers and Lazy
+     * SMP helpers since the last resetStats(), whose tables are not this game's
+     */
+    private long helperHits;
+    /**
+     * Deepest ply below the board of the current pickAIMove() call the search reached
+     */
+    private int maxDepth;
+    /**
+     * Number of empty tiles of the board of the current pickAIMove() call
+     */
+    private int rootMovesLeft;
+    /**
+     * Statistics of the last pickAIMove() call
+     */
+    private SearchStats stats;
+    /**
+     * Search implementation of behavior level 3
+     */
+    private SearchMode mode;
+    /**
+     * Score of the best move found by the last negamax root search, the
+     * center of the next aspiration window
+     */
+    private int lastScore;
+    /**
+     * Indicator if lastScore holds a score to aspirate around
+     */
+    private boolean hasLastScore;
+    /**
+     * Parallel root search of behavior levels 3 and 4, null to search on the calling thread
+     */
+    private ParallelSearch parallel;
+    /**
+     * Helper threads of SearchMode.LAZY_SMP, null to search without helpers
+     */
+    private LazySmpSearch helpers;
+    /**
+     * Monte Carlo tree search of behavior level 5, created on first use if not set
+     */
+    private MonteCarloSearch monteCarlo;
+    /**
+     * Indicator set by another thread to stop the running search, used by Lazy
+     * SMP helpers and to cancel a search running off the JavaFX thread
+     */
+    private volatile boolean halted;
+    /**
+     * Random number generator for row and col positions of behavior level 0
+     */
+    private Random random;
+    /**
+     * Status of the game, kept by play() and updateStatus()
+     */
+    private GameStatus status;
+    /**
+     * Number of empty tiles, kept along with the status
+     */
+    private int emptyTiles;
+    /**
+     * Tile (row * SIZE + col) of the move placed by the last pickAIMove() call, -1 if none
+     */
+    private int lastMove;
 
     public TicTacToe () {
         board = new char[SIZE][SIZE];
+        position = new BitBoard ();
+        table = new TranspositionTable (TABLE_BYTES);
+        lookup = PERFECT_PLAY == null ? null : PERFECT_PLAY.view();
+        ordering = new MoveOrdering ();
+        ordered = true;
+        mode = SearchMode.MINIMAX;
+        random = new Random ();
+        status = GameStatus.IN_PROGRESS;
+        emptyTiles = SIZE * SIZE;
+        lastMove = -1;
         
         for (int j = 0; j < SIZE; j++)
             for (int k = 0; k < SIZE; k++)
@@ -87,6 +242,311 @@ public class TicTacToe {
         return board;
     }
 
+    /**
+     * Gets the transposition table used by behavior level 3
+     * 
+     * @return the transposition table
+     */
+    public TranspositionTable getTable () {
+        return table;
+    }
+
+    /**
+     * Sets the transposition table behavior level 3 searches with, used to let
+     * Lazy SMP helpers share the table of the game they help
+     * 
+     * @param   table   the table, or a view() of another game's table
+     */
+    public void setTable (TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Sets the precomputed table behavior level 3 answers from
+     * 
+     * @param   lookup  the table to use, or null to always run the live search
+     */
+    public void setLookupTable (PerfectPlayTable lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Limits the think time of behavior level 3. With a limit set, level 3
+     * searches with iterative deepening and plays the best move of the deepest
+     * iteration completed within the budget.
+     * 
+     * @param   timeLimit   wall-clock budget per move in milliseconds, 0 for no limit
+     * @param   nodeLimit   node budget per move, 0 for no limit
+     */
+    public void setSearchLimits (long timeLimit, long nodeLimit) {
+        this.timeLimit = timeLimit;
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Gets the depth of the deepest iteration the last budgeted search completed
+     * 
+     * @return the number of moves looked ahead, counting the AI move itself
+     */
+    public int getCompletedDepth () {
+        return completedDepth;
+    }
+
+    /**
+     * Turns the move ordering heuristics of level 3 on or off, without them
+     * moves are searched in row-major order
+     * 
+     * @param   ordered     true to order moves by the heuristics
+     */
+    public void setMoveOrdering (boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Sets the search implementation of behavior level 3
+     * 
+     * @param   mode    the search implementation to use
+     */
+    public void setSearchMode (SearchMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Gets the number of nodes searched since the last resetStats()
+     * 
+     * @return the number of minimax calls
+     */
+    public long getNodes () {
+        return nodes;
+    }
+
+    /**
+     * Gets the number of alpha-beta cutoffs since the last resetStats()
+     * 
+     * @return the number of nodes whose remaining moves were pruned
+     */
+    public long getCutoffs () {
+        return cutoffs;
+    }
+
+    /**
+     * Gets the number of cutoffs caused by the first move searched at a node
+     * since the last resetStats()
+     * 
+     * @return the number of first move cutoffs
+     */
+    public long getFirstCutoffs () {
+        return firstCutoffs;
+    }
+
+    /**
+     * Gets the deepest ply below the board the last search reached
+     * 
+     * @return the depth in plies, 0 before the first search
+     */
+    public int getMaxDepth () {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the statistics of the last pickAIMove() call: nodes, depth reached,
+     * cutoffs, transposition table hits and time to decision
+     * 
+     * @return the statistics, null before the first move
+     */
+    public SearchStats getSearchStats () {
+        return stats;
+    }
+
+    /**
+     * Resets the node, cutoff, table hit and depth counters
+     */
+    public void resetStats () {
+        nodes = cutoffs = firstCutoffs = helperHits = 0;
+        maxDepth = 0;
+    }
+
+    /**
+     * Sets the number of threads behavior levels 3 and 4 search the root moves
+     * with. Searches with a budget (setSearchLimits) stay on the calling thread.
+     * 
+     * @param   parallelism     number of threads, 1 to search on the calling thread
+     */
+    public void setParallelism (int parallelism) {
+        if (parallel != null)
+            parallel.shutdown();
+
+        parallel = parallelism > 1 ? new ParallelSearch (parallelism) : null;
+    }
+
+    /**
+     * Gets the number of threads behavior levels 3 and 4 search with
+     * 
+     * @return the parallelism level, 1 if searching on the calling thread
+     */
+    public int getParallelism () {
+        return parallel == null ? 1 : parallel.getParallelism();
+    }
+
+    /**
+     * Sets the number of helper threads of SearchMode.LAZY_SMP
+     * 
+     * @param   threads     number of helpers, 0 to search on the calling thread only
+     */
+    public void setHelperThreads (int threads) {
+        if (helpers != null)
+            helpers.shutdown();
+
+        helpers = threads > 0 ? new LazySmpSearch (threads) : null;
+    }
+
+    /**
+     * Gets the number of helper threads of SearchMode.LAZY_SMP
+     * 
+     * @return the number of helpers
+     */
+    public int getHelperThreads () {
+        return helpers == null ? 0 : helpers.getThreads();
+    }
+
+    /**
+     * Stops the running search of this game, or allows the next one to run. 
+     * Can be called from any thread; a halted pickAIMove() returns as soon as
+     * possible and the move it leaves on the board is meaningless.
+     * 
+     * @param   halted  true to stop the running search, false before searching again
+     */
+    public void setHalted (boolean halted) {
+        this.halted = halted;
+        if (parallel != null)
+            parallel.setHalted(halted);
+    }
+
+    /**
+     * Checks if the running search of this game has been halted
+     * 
+     * @return true if setHalted(true) was called last
+     */
+    public boolean isHalted () {
+        return halted;
+    }
+
+    /**
+     * Sets the Monte Carlo tree search behavior level 5 runs on. It takes
+     * its playout budget from setSearchLimits (the node limit counts playouts),
+     * MonteCarloSearch.DEFAULT_PLAYOUTS without limits.
+     * 
+     * @param   monteCarlo  the search, may be shared by games that never search at the same time
+     */
+    public void setMonteCarlo (MonteCarloSearch monteCarlo) {
+        this.monteCarlo = monteCarlo;
+    }
+
+    /**
+     * Copies the board, pieces and search settings of another game
+     * 
+     * @param   game    the game to copy
+     */
+    public void copyGame (TicTacToe game) {
+        for (int j = 0; j < SIZE; j++)
+            System.arraycopy(game.board[j], 0, board[j], 0, SIZE);
+
+        AI = game.AI;
+        PLAYER = game.PLAYER;
+        AIFirstMove = game.AIFirstMove;
+        status = game.status;
+        emptyTiles = game.emptyTiles;
+        AILevel = game.AILevel;
+        mode = game.mode;
+        ordered = game.ordered;
+    }
+
+    /**
+     * Scores an AI move on the current board with the level 3 search (used to
+     * generate and verify the perfect play table)
+     * 
+     * @param   row     row of the empty tile
+     * @param   col     column of the empty tile
+     * 
+     * @return  the minimax score of the board state after the move
+     */
+    public int scoreMove (int row, int col) {
+        return scoreMove(row, col, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Scores an AI move on the current board with the search of the behavior 
+     * level set (3 or 4), the way pickAIMove() scores each of its root moves
+     * 
+     * @param   row     row of the empty tile
+     * @param   col     column of the empty tile
+     * @param   floor   score the move is compared against, 
+     *                  Integer.MIN_VALUE for an exact score
+     * 
+     * @return  the score of the board state after the move, exact if it is
+     *          greater than floor, otherwise an upper bound
+     */
+    public int scoreMove (int row, int col, int floor) {
+        int cell = row * SIZE + col;
+        int eval;
+
+        position.load(board, AI, PLAYER);
+        rootMovesLeft = position.getMovesLeft();
+        position.play(cell, true);
+
+        table.newSearch();
+        distance = AILevel == 4;
+        if (mode != SearchMode.MINIMAX)
+            eval = absolute(-negamax(position.getMovesLeft(), -Integer.MAX_VALUE, -relative(floor, true), false), true);
+        else
+            eval = minimax(position.getMovesLeft(), floor, Integer.MAX_VALUE, false);
+
+        position.undo(cell, true);
+        return eval;
+    }
+
+    /**
+     * For levels 3-4 with parallelism set, scores the root moves on the parallel
+     * search and picks the move the search on the calling thread would pick
+     * 
+     * @param   moves   bitmask of the root moves
+     * 
+     * @return  the index of the chosen tile, -1 if none
+     */
+    private int parallelRoot (int moves) {
+        int[] scores = new int[BitBoard.CELLS];
+        SearchStats[] counts = new SearchStats[BitBoard.CELLS];
+        int best = Integer.MIN_VALUE;
+        int move = -1;
+
+        parallel.scoreRootMoves(this, moves, scores, counts);
+
+        for (; moves != 0; moves &= moves - 1) {
+            int cell = Integer.numberOfTrailingZeros(moves);
+
+            merge(counts[cell]);
+            if (scores[cell] > best) {
+                best = scores[cell];
+                move = cell;
+            }
+        }
+
+        return move;
+    }
+
+    /**
+     * Adds the counters of a search run on another thread to the counters of
+     * this game
+     * 
+     * @param   helper  statistics of the other thread's search
+     */
+    private void merge (SearchStats helper) {
+        nodes += helper.getNodes();
+        cutoffs += helper.getCutoffs();
+        helperHits += helper.getTableHits();
+        maxDepth = Math.max(maxDepth, helper.getMaxDepth());
+    }
+
     /**
      * For the AI to choose a move when it has the turn, choice varies depending
      * on behavior level set
@@ -94,298 +554,552 @@ public class TicTacToe {
     public void pickAIMove () {
         // temporary move set values
         int[] moves = {-1, -1};
+        // nothing is left to resume of a halted search
+        aborted = false;
+        // counters at the start of the call, for the statistics of this call
+        SearchEvent event = new SearchEvent ();
+        long start = System.nanoTime ();
+        long nodesBefore = nodes;
+        long cutoffsBefore = cutoffs;
+        long hitsBefore = table.getHits() + helperHits;
+
+        event.begin();
+        maxDepth = 0;
+        rootMovesLeft = getMovesLeft();
 
         switch (AILevel) {
             /* RANDOM BEHAVIOR AI */
             case 0:
                 // indicator of a valid tile to occupy
                 boolean validMove = false;
-                // random number generator for row and col positions in the 3x3 SIZE state
-                Random rand = new Random ();
-
                 // get a valid tile for the agent to randomly occupy
                 while (!validMove) {
-                    moves[0] = rand.nextInt (3);
-                    moves[1] = rand.nextInt (3);
+                    moves[0] = random.nextInt (3);
+                    moves[1] = random.nextInt (3);
 
                     // if tile randomly chosen is empty, then it is a valid move
                     if (board[moves[0]][moves[1]] == EMPTY)
                         validMove = true;
                 }
                 break;
-            /* HARD-CODED BEHAVIOR AI */
+            /* RULE-BASED BEHAVIOR AI */
             case 1:
-                // check if AI has a chance to win
-                boolean stop = false; 
-                // check row and column lines
-                for (int k = 0; k < SIZE && !stop; k++) {
-                    // ROW: first and second tiles are occupied, third tile is empty
-                    if (board[k][0] == board[k][1] && board[k][1] == AI && board[k][2] == EMPTY) {
-                        board[k][2] = AI;
-                        stop = true; 
-                    }
-                    // ROW: first and third tiles are occupied, second tile is empty
-                    else if (board[k][0] == board[k][2] && board[k][2] == AI && board[k][1] == EMPTY) {
-                        board[k][1] = AI;
-                        stop = true; 
-                    }
-                    // ROW: second and third tiles are occupied, first tile is empty
-                    else if (board[k][1] == board[k][2] && board[k][2] == AI && board[k][0] == EMPTY) {
-                        board[k][0] = AI;
-                        stop = true;
-                    }
-                    // COLUMN: first and second tiles are occupied, third tile is empty 
-                    else if (board[0][k] == board[1][k] && board[1][k] == AI && board[2][k] == EMPTY) {
-                        board[2][k] = AI;
-                        stop = true; 
-                    }
-                    // COLUMN: first and third tiles are occupied, second tile is empty 
-                    else if (board[0][k] == board[2][k] && board[2][k] == AI && board[1][k] == EMPTY) {
-                        board[1][k] = AI;
-                        stop = true;
-                    }
-                    // COLUMN: second and third tiles are occupied, first tile is empty 
-                    else if (board[1][k] == board[2][k] && board[2][k] == AI && board[0][k] == EMPTY) {
-                        board[0][k] = AI;
-                        stop = true;
-                    }
-                }
-                // check left diagonal 
-                // first and second tiles are occupied, third tile is empty
-                if (board[0][0] == board[1][1] && board[1][1] == AI && board[2][2] == EMPTY && !stop) {
-                    board[2][2] = AI;
-                    stop = true;
-                }
-                // first and third tiles are occupied, second tile is empty
-                else if (board[0][0] == board[2][2] && board[2][2] == AI && board[1][1] == EMPTY && !stop) {
-                    board[1][1] = AI;
-                    stop = true; 
-                }
-                // second and third tiles are occupied, first tile is empty 
-                else if (board[1][1] == board[2][2] && board[2][2] == AI && board[0][0] == EMPTY && !stop) {
-                    board[0][0] = AI;
-                    stop = true;
-                }
-                // check right diagonal
-                // first and second tiles are occupied, third tile is empty 
-                else if (board[0][2] == board[1][1] && board[1][1] == AI && board[2][0] == EMPTY && !stop) {
-                    board[2][0] = AI;
-                    stop = true; 
-                }
-                // first and third tiles are occupied, second tile is empty 
-                else if (board[0][2] == board[2][2] && board[2][2] == AI && board[1][1] == EMPTY && !stop) {
-                    board[1][1] = AI;
-                    stop = true; 
-                }
-                // second and third tiles are occupied, first tile is empty
-                else if (board[1][1] == board[2][0] && board[2][0] == AI && board[0][2] == EMPTY && !stop) {
-                    board[0][2] = AI;
-                    stop = true; 
-                }
-                // if AI has no chance of winning yet
-                if (!stop) {
-                    // if player is attempting to create a fork, block it 
-                    if (((board[0][0] == board[2][2] && board[0][0] == PLAYER) || 
-                         (board[0][2] == board[2][0] && board[0][2] == PLAYER)) &&
-                        board[1][1] == AI && board[0][1] == board[1][0] && board[1][0] == board[1][2] && 
-                        board[1][2] == board[2][1] && board[0][1] == EMPTY) {
-                        // occupy middle tiles
-                        if (board[0][1] == EMPTY) 
-                            board[0][1] = AI;
-                        else if (board[2][1] == EMPTY) 
-                            board[2][1] = AI;
-                        else if (board[1][0] == EMPTY) 
-                            board[1][0] = AI;
-                        else 
-                            board[1][2] = AI;
-                    }
-                    // else, check if player has a chance of winning 
-                    // if player will win at either the first row, first column, or left diagonal
-                    // and top left corner tile is empty, occupy top left corner tile
-                    else if (board[0][0] == EMPTY && ((board[0][1] == PLAYER && board[0][2] == PLAYER)
-                            || (board[1][0] == PLAYER && board[2][0] == PLAYER)
-                            || (board[2][2] == PLAYER && board[1][1] == PLAYER))) 
-                        board[0][0] = AI;
-                    // if player will win at either third row, first column, or right diagonal
-                    // and bottom left corner tile is empty, occupy bottom left corner tile
-                    else if (board[2][0] == EMPTY && ((board[1][0] == PLAYER && board[0][0] == PLAYER)
-                            || (board[0][2] == PLAYER && board[1][1] == PLAYER)
-                            || (board[2][1] == PLAYER && board[2][2] == PLAYER))) 
-                        board[2][0] = AI;
-                    // if player will win at either the first row, third column, or right diagonal
-                    // and top right corner tile is empty, occupy top right corner tile
-                    else if (board[0][2] == EMPTY && ((board[0][0] == PLAYER && board[0][1] == PLAYER)
-                            || (board[2][0] == PLAYER && board[1][1] == PLAYER)
-                            || (board[2][2] == PLAYER && board[1][2] == PLAYER))) 
-                        board[0][2] = AI;
-                    // if player will win at either the third row, third column, or left diagonal,
-                    // and bottom right corner tile is empty, occupy bottom right corner tile
-                    else if (board[2][2] == EMPTY && ((board[0][2] == PLAYER && board[1][2] == PLAYER)
-                            || (board[1][1] == PLAYER && board[0][0] == PLAYER)
-                            || (board[2][0] == PLAYER && board[2][1] == PLAYER))) 
-                        board[2][2] = AI;
-                    // if player will win at either the second row or first column,
-                    // and left middle tile is empty, occupy left middle tile
-                    else if (board[1][0] == EMPTY && ((board[0][0] == PLAYER && board[2][0] == PLAYER)
-                            || (board[1][2] == PLAYER && board[1][1] == PLAYER))) 
-                        board[1][0] = AI;
-                    // if player will win at either the second row, second column, left diagonal, or
-                    // right diagonal, and the center tile is empty, occupy center tile
-                    else if (board[1][1] == EMPTY && ((board[0][0] == PLAYER && board[2][2] == PLAYER)
-                            || (board[2][0] == PLAYER && board[0][2] == PLAYER)
-                            || (board[1][0] == PLAYER && board[1][2] == PLAYER)
-                            || (board[0][1] == PLAYER && board[2][1] == PLAYER))) 
-                        board[1][1] = AI;
-                    // if player will win at either the first row or second column,
-                    // and the top center tile is empty, occupy top center tile
-                    else if (board[0][1] == EMPTY && ((board[0][0] == PLAYER && board[0][2] == PLAYER)
-                            || (board[2][1] == PLAYER && board[1][1] == PLAYER))) 
-                        board[0][1] = AI;
-                    // if player will win at either the second row or third column,
-                    // and the right middle tile is empty, occupy right middle tile
-                    else if (board[1][2] == EMPTY && ((board[0][2] == PLAYER && board[2][2] == PLAYER)
-                            || (board[1][0] == PLAYER && board[1][1] == PLAYER))) 
-                        board[1][2] = AI;
-                    // if player will win at either the third row or second column,
-                    // and the bottom middle tile is empty, occupy bottom middle tile
-                    else if (board[2][1] == EMPTY && ((board[0][1] == PLAYER && board[1][1] == PLAYER)
-                            || (board[2][2] == PLAYER && board[2][0] == PLAYER))) 
-                        board[2][1] = AI;
-                    // if player has no chance of winning yet, attempt to create a fork 
-                    // center case
-                    else if (board[1][1] == board[0][1] && board[0][1] == board[2][1] && board[2][1] == board[1][0]
-                            && board[1][0] == board[1][2] && board[1][1] == EMPTY)
-                        board[1][1] = AI;
-                    // corner case
-                    else if (board[0][0] == board[1][0] && board[1][0] == board[2][0] && board[2][0] == board[0][1]
-                            && board[0][1] == board[0][2] && board[0][0] == EMPTY)
-                        board[0][0] = AI;
-                    else if (board[2][0] == board[0][0] && board[0][0] == board[1][0] && board[1][0] == board[2][1]
-                            && board[2][1] == board[2][2] && board[2][0] == EMPTY)
-                        board[2][0] = AI;
-                    else if (board[0][2] == board[1][2] && board[1][2] == board[2][2] && board[2][2] == board[0][0]
-                            && board[0][0] == board[0][1] && board[0][2] == EMPTY)
-                        board[0][2] = AI;
-                    else if (board[2][2] == board[0][2] && board[0][2] == board[1][2] && board[1][2] == board[2][0]
-                            && board[2][0] == board[2][1] && board[2][2] == EMPTY)
-                        board[2][2] = AI;
-                    // middle case
-                    else if (board[1][0] == board[2][0] && board[2][0] == board[0][0] && board[0][0] == board[1][1]
-                            && board[1][1] == board[1][2] && board[1][0] == EMPTY)
-                        board[1][0] = AI;
-                    else if (board[1][2] == board[2][2] && board[2][2] == board[0][2] && board[0][2] == board[1][0]
-                            && board[1][0] == board[1][1] && board[1][2] == EMPTY)
-                        board[1][2] = AI;
-                    else if (board[2][1] == board[1][1] && board[1][1] == board[0][1] && board[0][1] == board[2][0]
-                            && board[2][0] == board[2][2] && board[2][1] == EMPTY)
-                        board[2][1] = AI;
-                    else if (board[0][1] == board[1][1] && board[1][1] == board[2][1] && board[2][1] == board[0][0]
-                            && board[0][0] == board[0][2] && board[0][0] == EMPTY)
-                        board[0][1] = AI;
-                    // if cant create an fork, occupy empty tiles based on priority
-                    // center 
-                    else if (board[1][1] == EMPTY)
-                        board[1][1] = AI;
-                    // opposite corners, if player is in a corner, occupy opposite corner
-                    else if (board[0][0] == PLAYER && board[2][2] == EMPTY)
-                        board[2][2] = AI;
-                    else if (board[0][0] == EMPTY && board[2][2] == PLAYER)
-                        board[0][0] = AI;
-                    else if (board[0][2] == PLAYER && board[2][0] == EMPTY)
-                        board[2][0] = AI;
-                    else if (board[0][2] == EMPTY && board[2][0] == PLAYER)
-                        board[0][2] = AI;
-                    // empty corners
-                    else if (board[0][0] == EMPTY)
-                        board[0][0] = AI; 
-                    else if (board[2][2] == EMPTY) 
-                        board[2][2] = AI;
-                    else if (board[0][2] == EMPTY)
-                        board[0][2] = AI;
-                    else if (board[2][0] == EMPTY)
-                        board[2][0] = AI;
-                    // empty middles
-                    else if (board[0][1] == EMPTY)
-                        board[0][1] = AI;
-                    else if (board[1][2] == EMPTY)
-                        board[1][2] = AI;
-                    else if (board[2][1] == EMPTY)
-                        board[2][1] = AI;
-                    else if (board[1][0] == EMPTY)
-                        board[1][0] = AI;
+                // move of the first level 1 rule matching the board
+                int rule = LEVEL1_RULES.pick(tilesOf(AI), tilesOf(PLAYER));
+                if (rule != -1) {
+                    moves[0] = rule / SIZE;
+                    moves[1] = rule % SIZE;
                 }
                 break;
             /* DEPTH 1 SEARCH AI BEHAVIOR */
             case 2:
+                position.load(board, AI, PLAYER);
                 int best = Integer.MIN_VALUE;
                 // traverse all empty spaces to get the best move for AI 
-                for (int j = 0; j < SIZE; j++)
-                    for (int k = 0; k < SIZE; k++)
-                        // if empty space, occupy and check if best move 
-                        if (board[j][k] == EMPTY) {
-                            board[j][k] = AI;
-                            int eval = evaluate();
-                            board[j][k] = EMPTY;
-                            // if current move has greater evaluated score than best 
-                            if (eval > best) {
-                                best = eval; 
-                                moves[0] = j; 
-                                moves[1] = k;
-                            }
-                        }
+                for (int empty = position.getEmpty(); empty != 0; empty &= empty - 1) {
+                    int cell = Integer.numberOfTrailingZeros(empty);
+                    // every scored tile is a node one ply deep
+                    nodes += 1;
+                    maxDepth = 1;
+                    // occupy and check if best move 
+                    position.play(cell, true);
+                    int eval = position.evaluate();
+                    position.undo(cell, true);
+                    // if current move has greater evaluated score than best 
+                    if (eval > best) {
+                        best = eval; 
+                        moves[0] = cell / SIZE; 
+                        moves[1] = cell % SIZE;
+                    }
+                }
                 break;
             /* MINIMAX AI */
             case 3:
-                best = Integer.MIN_VALUE;
-                // traverse all empty spaces to get the best move for AI 
-                for (int j = 0; j < SIZE; j++)
-                    for (int k = 0; k < SIZE; k++)
-                        // if empty space, occupy and check if best move 
-                        if (board[j][k] == EMPTY) {
-                            board[j][k] = AI;
-                            int eval = minimax(getMovesLeft(), Integer.MIN_VALUE, Integer.MAX_VALUE, false);
-                            board[j][k] = EMPTY;
-                            // if current move has greater evaluated score than best 
-                            if (eval > best) {
-                                best = eval;
-                                moves[0] = j; 
-                                moves[1] = k;
-                            }
-                        }
-                break;
-            /* CTR-BASED AI */
+            /* DISTANCE-AWARE MINIMAX AI */
             case 4:
-                int prevCtr = Integer.MAX_VALUE;
+                position.load(board, AI, PLAYER);
+                // level 4 prefers the fastest win and the slowest loss, otherwise it searches like level 3
+                distance = AILevel == 4;
+                // answer from the precomputed table of level 3 moves when the position is in it
+                if (!distance && lookup != null && lookup.probe(position.getAI(), position.getPlayer())) {
+                    if (lookup.getMove() != -1) {
+                        moves[0] = lookup.getMove() / SIZE;
+                        moves[1] = lookup.getMove() % SIZE;
+                    }
+                    break;
+                }
+                // helpers search the same position until the search below is done
+                if (mode == SearchMode.LAZY_SMP && helpers != null) {
+                    int cell = lazySmpRoot();
+                    if (cell != -1) {
+                        moves[0] = cell / SIZE;
+                        moves[1] = cell % SIZE;
+                    }
+                    break;
+                }
+                // bounded think time: best move of the deepest completed iteration
+                if (timeLimit > 0 || nodeLimit > 0) {
+                    int cell = deepen();
+                    if (cell != -1) {
+                        moves[0] = cell / SIZE;
+                        moves[1] = cell % SIZE;
+                    }
+                    break;
+                }
+                // root moves spread over the parallel search
+                if (parallel != null) {
+                    int cell = parallelRoot(position.getUniqueMoves());
+                    if (cell != -1) {
+                        moves[0] = cell / SIZE;
+                        moves[1] = cell % SIZE;
+                    }
+                    break;
+                }
+                table.newSearch();
+                if (mode != SearchMode.MINIMAX) {
+                    int[] order = new int[BitBoard.CELLS];
+                    int count = 0;
+
+                    for (int empty = position.getUniqueMoves(); empty != 0; empty &= empty - 1)
+                        order[count++] = Integer.numberOfTrailingZeros(empty);
+
+                    int cell = negamaxRoot(position.getMovesLeft(), order, count, new int[BitBoard.CELLS], false);
+                    if (cell != -1) {
+                        moves[0] = cell / SIZE;
+                        moves[1] = cell % SIZE;
+                    }
+                    break;
+                }
                 best = Integer.MIN_VALUE;
-                // traverse all empty spaces to get the best move for AI 
-                for (int j = 0; j < SIZE; j++)
-                    for (int k = 0; k < SIZE; k++)
-                        // if empty space, occupy and check if best move 
-                        if (board[j][k] == EMPTY) {
-                            board[j][k] = AI;
-                            ctr = 0;
-                            int eval = minimax(getMovesLeft(), Integer.MIN_VALUE, Integer.MAX_VALUE, false);
-                            // int eval = evaluate();
-                            board[j][k] = EMPTY;
-                            // if current move has greater evaluated score than best 
-                            if (eval > best || (eval >= best && ctr < prevCtr)) {
-                                best = eval; 
-                                prevCtr = ctr;
-                                moves[0] = j; 
-                                moves[1] = k;
-                            }
-                        }
+                // traverse the empty spaces to get the best move for AI, skipping symmetric duplicates
+                for (int empty = position.getUniqueMoves(); empty != 0; empty &= empty - 1) {
+                    int cell = Integer.numberOfTrailingZeros(empty);
+                    // occupy and check if best move 
+                    position.play(cell, true);
+                    int eval = minimax(position.getMovesLeft(), Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+                    position.undo(cell, true);
+                    // if current move has greater evaluated score than best 
+                    if (eval > best) {
+                        best = eval;
+                        moves[0] = cell / SIZE; 
+                        moves[1] = cell % SIZE;
+                    }
+                }
+                break;
+            /* MONTE CARLO TREE SEARCH AI */
+            case 5:
+                position.load(board, AI, PLAYER);
+                if (monteCarlo == null)
+                    monteCarlo = new MonteCarloSearch ();
+                long playouts = timeLimit > 0 || nodeLimit > 0 ? nodeLimit : MonteCarloSearch.DEFAULT_PLAYOUTS;
+                int sampled = monteCarlo.search(this, position.getAI(), position.getPlayer(), playouts, timeLimit,
+                                                random.nextLong());
+                // playouts are counted as nodes
+                nodes += monteCarlo.getPlayouts();
+                maxDepth = monteCarlo.getMaxDepth();
+                if (sampled != -1) {
+                    moves[0] = sampled / SIZE;
+                    moves[1] = sampled % SIZE;
+                }
                 break;
         }
         
-        // if move set has been changed from Levels 0, 2, 3, and 4, assign AI move to best move set
-        if (moves[0] != -1 && moves[1] != -1)
-            board[moves[0]][moves[1]] = AI;
+        // if move set has been changed from any level, assign AI move to best move set
+        lastMove = -1;
+        if (moves[0] != -1 && moves[1] != -1) {
+            play(moves[0], moves[1], true);
+            lastMove = moves[0] * SIZE + moves[1];
+        }
+
+        stats = new SearchStats (AILevel, nodes - nodesBefore, maxDepth, cutoffs - cutoffsBefore,
+                                 table.getHits() + helperHits - hitsBefore, System.nanoTime () - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.level = AILevel;
+            event.nodes = stats.getNodes();
+            event.nodesPerSecond = stats.getNodesPerSecond();
+            event.maxDepth = maxDepth;
+            event.cutoffs = stats.getCutoffs();
+            event.tableHits = stats.getTableHits();
+            event.commit();
+        }
+    }
+
+    /**
+     * For level 3 with a search budget, searches the root moves to depth 1, 2, 3...
+     * until the budget runs out or the whole game tree has been searched. Each 
+     * iteration searches the moves in the order of the previous iteration's scores,
+     * and leaves its results in the transposition table for the next one. The first 
+     * iteration is not stopped by the node or time budget, only a halt can stop it.
+     * 
+     * @return  the index of the tile (row * SIZE + col) chosen by the deepest 
+     *          completed iteration, -1 if halted before one completed
+     */
+    private int deepen () {
+        int[] order = new int[BitBoard.CELLS];
+        int[] scores = new int[BitBoard.CELLS];
+        int count = 0;
+        int bestMove = -1;
+
+        for (int empty = position.getUniqueMoves(); empty != 0; empty &= empty - 1)
+            order[count++] = Integer.numberOfTrailingZeros(empty);
+
+        table.newSearch();
+        startNodes = nodes;
+        aborted = false;
+        completedDepth = 0;
+        deadline = System.nanoTime() + timeLimit * 1000000;
+
+        for (int depth = 1; depth <= position.getMovesLeft() && !aborted; depth++) {
+            int best = Integer.MIN_VALUE;
+            int move = BitBoard.CELLS;
+            budgeted = depth > 1;
+
+            if (mode != SearchMode.MINIMAX)
+                move = negamaxRoot(depth, order, count, scores, true);
+            else for (int i = 0; i < count && !aborted; i++) {
+                int cell = order[i];
+                position.play(cell, true);
+                scores[cell] = minimax(depth - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+                position.undo(cell, true);
+                // of equally scored moves keep the first in row-major order, like the full search
+                if (scores[cell] > best || (scores[cell] == best && cell < move)) {
+                    best = scores[cell];
+                    move = cell;
+                }
+            }
+
+            if (!aborted) {
+                bestMove = move;
+                completedDepth = depth;
+
+                // search the best scored moves of this iteration first in the next one
+                for (int i = 1; i < count; i++)
+                    for (int j = i; j > 0 && (scores[order[j]] > scores[order[j - 1]] ||
+                         (scores[order[j]] == scores[order[j - 1]] && order[j] < order[j - 1])); j--) {
+                        int temp = order[j];
+                        order[j] = order[j - 1];
+                        order[j - 1] = temp;
+                    }
+            }
+        }
+
+        budgeted = false;
+        return bestMove;
+    }
+
+    /**
+     * For level 3 in SearchMode.LAZY_SMP, starts the helpers, searches the root 
+     * moves on the calling thread the way NEGAMAX does (deepen() with a budget,
+     * the full game tree without) and stops the helpers again. Helpers only
+     * share entries of finished subtrees, so the move is the one NEGAMAX picks.
+     * 
+     * @return  the index of the chosen tile, -1 if none
+     */
+    private int lazySmpRoot () {
+        table.newSearch();
+        helpers.start(this);
+
+        try {
+            if (timeLimit > 0 || nodeLimit > 0)
+                return deepen();
+
+            int[] order = new int[BitBoard.CELLS];
+            int count = 0;
+
+            for (int empty = position.getUniqueMoves(); empty != 0; empty &= empty - 1)
+                order[count++] = Integer.numberOfTrailingZeros(empty);
+
+            return negamaxRoot(position.getMovesLeft(), order, count, new int[BitBoard.CELLS], false);
+        } finally {
+            merge(helpers.stop());
+        }
+    }
+
+    /**
+     * Runs the search of a Lazy SMP helper on the board copied from the game
+     * it helps: iterative deepening over the root moves, started one depth 
+     * deeper on every other helper and with the root moves rotated by the 
+     * helper's index, until the whole game tree is searched or setHalted(true)
+     * is called. Only finished subtrees are stored in the shared table.
+     * 
+     * @param   id  index of the helper
+     */
+    public void helpSearch (int id) {
+        int[] order = new int[BitBoard.CELLS];
+        int[] scores = new int[BitBoard.CELLS];
+        int count = 0;
+
+        position.load(board, AI, PLAYER);
+        rootMovesLeft = position.getMovesLeft();
+        maxDepth = 0;
+        for (int empty = position.getUniqueMoves(); empty != 0; empty &= empty - 1)
+            order[count++] = Integer.numberOfTrailingZeros(empty);
+        // search the root moves from a different first move on each helper
+        for (int i = 0; i < id % Math.max(1, count); i++) {
+            int first = order[0];
+            System.arraycopy(order, 1, order, 0, count - 1);
+            order[count - 1] = first;
+        }
+
+        distance = AILevel == 4;
+        aborted = false;
+        budgeted = true;
+        hasLastScore = false;
+        startNodes = nodes;
+        for (int depth = 1 + id % 2; depth <= position.getMovesLeft() && !aborted; depth++)
+            negamaxRoot(depth, order, count, scores, true);
+
+        budgeted = false;
+    }
+
+    /**
+     * Searches the root moves of the AI with negamax. The first move is searched
+     * with an aspiration window around the previous score (falling back to the 
+     * full window if the score lands outside it), every other move first with a
+     * null window that only tells if it beats the best move so far.
+     * 
+     * @param   depth       remaining depth at the root
+     * @param   order       root moves in the order to search them
+     * @param   count       number of root moves
+     * @param   scores      receives the score of each root move, exact for moves that
+     *                      became the best move and an upper bound for the others
+     * @param   tieBreak    true to let an equally scored lower tile replace the best
+     *                      move (moves not in row-major order), false to only replace
+     *                      it with a strictly better move
+     * 
+     * @return  the index of the best tile, -1 if none beat a loss and tieBreak is false
+     */
+    private int negamaxRoot (int depth, int[] order, int count, int[] scores, boolean tieBreak) {
+        int best = -Integer.MAX_VALUE;
+        int move = tieBreak ? BitBoard.CELLS : -1;
+
+        for (int i = 0; i < count && !aborted; i++) {
+            int cell = order[i];
+            // score the move has to beat to replace the best move
+            long threshold = cell < move ? best - 1L : best;
+            int eval;
+
+            position.play(cell, true);
+            if (i == 0 && hasLastScore && Math.abs(lastScore) < Integer.MAX_VALUE - ASPIRATION) {
+                int low = lastScore - ASPIRATION;
+                int high = lastScore + ASPIRATION;
+
+                eval = -negamax(depth - 1, -high, -low, false);
+                if (eval <= low || eval >= high)
+                    eval = -negamax(depth - 1, -Integer.MAX_VALUE, Integer.MAX_VALUE, false);
+            } else if (i == 0 || threshold < -Integer.MAX_VALUE)
+                eval = -negamax(depth - 1, -Integer.MAX_VALUE, Integer.MAX_VALUE, false);
+            else if (threshold >= Integer.MAX_VALUE)
+                // nothing beats a win
+                eval = -Integer.MAX_VALUE;
+            else {
+                eval = -negamax(depth - 1, (int) -threshold - 1, (int) -threshold, false);
+                if (eval > threshold)
+                    eval = -negamax(depth - 1, -Integer.MAX_VALUE, (int) -threshold, false);
+            }
+            position.undo(cell, true);
+
+            scores[cell] = eval == -Integer.MAX_VALUE ? Integer.MIN_VALUE : eval;
+            if (eval > threshold && !aborted) {
+                best = eval;
+                move = cell;
+            }
+        }
+
+        if (!aborted && move != -1) {
+            lastScore = best;
+            hasLastScore = true;
+        }
+
+        return move;
+    }
+
+    /**
+     * For level 3 in SearchMode.NEGAMAX, scores the board state held by the bitboard
+     * from the side of the player to move, searching every move after the first
+     * with a null window and re-searching only the moves that land inside (alpha, beta).
+     * Scores stored in the transposition table are kept from the AI's side so both
+     * search modes can share it.
+     * 
+     * @param   depth   the remaining depth to search
+     * @param   alpha   the score the player to move is already assured of
+     * @param   beta    the score the opponent is already assured of
+     * @param   isAI    indicator if the AI is to move
+     * 
+     * @return  the score of the board state for the player to move, where 
+     *          Integer.MAX_VALUE is a win and -Integer.MAX_VALUE a loss
+     */
+    public int negamax (int depth, int alpha, int beta, boolean isAI) {
+        nodes += 1;
+        maxDepth = Math.max(maxDepth, rootMovesLeft - position.getMovesLeft());
+        // out of budget, the caller discards this iteration
+        if ((budgeted || halted) && (aborted || outOfBudget()))
+            return 0;
+
+        int score = position.evaluate();
+
+        // no more moves left or AI or PLAYER has won
+        if (depth == 0 || score == Integer.MAX_VALUE || score == Integer.MIN_VALUE)
+            return relative(terminalScore(score), isAI);
+
+        long key = isAI ? position.getCanonicalHash() ^ BitBoard.AI_TO_MOVE : position.getCanonicalHash();
+        // scores by distance are kept apart from the plain ones
+        if (distance)
+            key ^= BitBoard.DISTANCE_SCORES;
+        int symmetry = position.getCanonicalSymmetry();
+        int alphaOrig = alpha;
+        int hashMove = -1;
+        int ply = BitBoard.CELLS - position.getMovesLeft();
+
+        // reuse the score of a position searched before, within the current window
+        if (table.probe(key)) {
+            if (table.getMove() != -1)
+                hashMove = Symmetry.INVERSE[symmetry][table.getMove()];
+
+            if (table.getDepth() >= depth) {
+                int stored = relative(table.getScore(), isAI);
+                int bound = table.getBound();
+
+                // the bound is kept from the AI's side, it flips for the Player
+                if (bound == TranspositionTable.EXACT)
+                    return stored;
+                else if ((bound == TranspositionTable.LOWER) == isAI)
+                    alpha = Math.max(alpha, stored);
+                else
+                    beta = Math.min(beta, stored);
+
+                if (beta <= alpha)
+                    return stored;
+            }
+        }
+
+        int eval = -Integer.MAX_VALUE;
+        int bestMove = -1;
+        int count = ordered ? ordering.order(position.getUniqueMoves(), ply, isAI, hashMove)
+                            : ordering.rowMajor(position.getUniqueMoves(), ply);
+        int[] moves = ordering.getMoves(ply);
+
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            int childEval;
+
+            position.play(cell, isAI);
+            if (i == 0)
+                childEval = -negamax(depth - 1, -beta, -alpha, !isAI);
+            else {
+                // null window: only prove the move is no better than alpha
+                childEval = -negamax(depth - 1, -alpha - 1, -alpha, !isAI);
+                if (childEval > alpha && childEval < beta)
+                    childEval = -negamax(depth - 1, -beta, -childEval, !isAI);
+            }
+            position.undo(cell, isAI);
+
+            if (childEval > eval || bestMove == -1) {
+                eval = childEval;
+                bestMove = cell;
+            }
+            alpha = Math.max(alpha, childEval);
+
+            if (beta <= alpha) {
+                cutoffs += 1;
+                if (i == 0)
+                    firstCutoffs += 1;
+                if (ordered && !aborted)
+                    ordering.cutoff(cell, ply, isAI, depth);
+                break;
+            }
+        }
+
+        // scores of an unfinished search are not cached
+        if (!aborted) {
+            int bound = eval <= alphaOrig ? TranspositionTable.UPPER
+                      : eval >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+
+            if (!isAI && bound != TranspositionTable.EXACT)
+                bound = bound == TranspositionTable.UPPER ? TranspositionTable.LOWER : TranspositionTable.UPPER;
+            table.store(key, absolute(eval, isAI), depth, bound, Symmetry.PERM[symmetry][bestMove]);
+        }
+
+        return eval;
+    }
+
+    /**
+     * Gives a win or loss found by the search its score. For behavior level 4
+     * the score tells how soon it happens: a win on a board with n pieces scores
+     * Integer.MAX_VALUE - n and a loss Integer.MIN_VALUE + n, so the search
+     * prefers the fastest win and the slowest loss. The piece count is a property
+     * of the board, so these scores can be cached like any other.
+     * 
+     * @param   score   score of the board from position.evaluate()
+     * 
+     * @return  the score of the board for the current scoring
+     */
+    private int terminalScore (int score) {
+        if (!distance)
+            return score;
+
+        int pieces = BitBoard.CELLS - position.getMovesLeft();
+        if (score == Integer.MAX_VALUE)
+            return score - pieces;
+        if (score == Integer.MIN_VALUE)
+            return score + pieces;
+
+        return score;
     }
 
     /**
-     * For level 3-4, analyzes and evaluates the current board state using
-     * the minimax algorithm
+     * Converts a score from the AI's side to the side of the player to move.
+     * Integer.MIN_VALUE (Player won) becomes -Integer.MAX_VALUE so it can be negated.
+     * 
+     * @param   score   score from the AI's side
+     * @param   isAI    indicator if the AI is to move
+     * 
+     * @return  the score from the side of the player to move
+     */
+    private static int relative (int score, boolean isAI) {
+        if (score == Integer.MIN_VALUE)
+            score = -Integer.MAX_VALUE;
+
+        return isAI ? score : -score;
+    }
+
+    /**
+     * Converts a score from the side of the player to move back to the AI's side
+     * 
+     * @param   score   score from the side of the player to move
+     * @param   isAI    indicator if the AI is to move
+     * 
+     * @return  the score from the AI's side
+     */
+    private static int absolute (int score, boolean isAI) {
+        if (!isAI)
+            score = -score;
+
+        return score == -Integer.MAX_VALUE ? Integer.MIN_VALUE : score;
+    }
+
+    /**
+     * Checks if the current budgeted search has run out of nodes or time, or has
+     * been halted by another thread. The clock is only read every 1024 nodes.
+     * 
+     * @return true if the search has to stop, otherwise false
+     */
+    private boolean outOfBudget () {
+        if (halted)
+            aborted = true;
+        else if (nodeLimit > 0 && nodes - startNodes >= nodeLimit)
+            aborted = true;
+        else if (timeLimit > 0 && (nodes & 1023) == 0 && System.nanoTime() >= deadline)
+            aborted = true;
+
+        return aborted;
+    }
+
+    /**
+     * For level 3-4, analyzes and evaluates the board state held by the bitboard
+     * using the minimax algorithm. The bitboard is loaded from the board by 
+     * pickAIMove() before the search starts.
      * 
      * @param   depth   the current depth of the board state according to the 
      *                  state-space graph
@@ -397,58 +1111,106 @@ public class TicTacToe {
      *          from evaluation
      */
     public int minimax (int depth, int alpha, int beta, boolean isMax) {
-        ctr += 1;
-        // no more moves left, therefore return the evaluated score
-        if (depth == 0)
-            return evaluate(); // to be coded 
-        
-        int score = evaluate();
+        nodes += 1;
+        maxDepth = Math.max(maxDepth, rootMovesLeft - position.getMovesLeft());
+        // out of budget, the caller discards this iteration
+        if ((budgeted || halted) && (aborted || outOfBudget()))
+            return 0;
+
+        int score = position.evaluate();
         
         // in the current board state, AI or PLAYER has won
         if (score == Integer.MAX_VALUE || score == Integer.MIN_VALUE)
+            return terminalScore(score);
+        // no more moves left, therefore return the evaluated score
+        if (depth == 0)
             return score;
+
+        long key = isMax ? position.getCanonicalHash() ^ BitBoard.AI_TO_MOVE : position.getCanonicalHash();
+        // scores by distance are kept apart from the plain ones
+        if (distance)
+            key ^= BitBoard.DISTANCE_SCORES;
+        int symmetry = position.getCanonicalSymmetry();
+        int alphaOrig = alpha;
+        int betaOrig = beta;
+        int hashMove = -1;
+        int ply = BitBoard.CELLS - position.getMovesLeft();
+
+        // reuse the score of a position searched before, within the current window
+        if (table.probe(key)) {
+            // the stored move is in the orientation of the canonical board
+            if (table.getMove() != -1)
+                hashMove = Symmetry.INVERSE[symmetry][table.getMove()];
+
+            if (table.getDepth() >= depth) {
+                int stored = table.getScore();
+
+                if (table.getBound() == TranspositionTable.EXACT)
+                    return stored;
+                else if (table.getBound() == TranspositionTable.LOWER)
+                    alpha = Math.max(alpha, stored);
+                else
+                    beta = Math.min(beta, stored);
+
+                if (beta <= alpha)
+                    return stored;
+            }
+        }
         
-        // if AI's turn
-        if (isMax) {
-            int eval = Integer.MIN_VALUE;
-
-            // traverse all empty spaces in the current board state
-            for (int j = 0; j < SIZE; j++)
-                for (int k = 0; k < SIZE; k++) 
-                    // if empty space, occupy temporarily and check evaluated score
-                    if (board[j][k] == EMPTY) {
-                        // temporarily occupy
-                        board[j][k] = AI;
-                        int maxEval = minimax(depth - 1, alpha, beta, false); // DFS
-                        eval = Math.max(eval, maxEval);
-                        alpha = Math.max (alpha, maxEval);
-                        // unoccupy space
-                        board[j][k] = EMPTY;
-                        if (beta <= alpha)
-                            return eval;
-                    }
-            
-            return eval; 
+        int eval = isMax ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int bestMove = -1;
+        // symmetric moves have the same score, search only one of them
+        int count = ordered ? ordering.order(position.getUniqueMoves(), ply, isMax, hashMove)
+                            : ordering.rowMajor(position.getUniqueMoves(), ply);
+        int[] moves = ordering.getMoves(ply);
+
+        // traverse all empty spaces in the current board state
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            // temporarily occupy
+            position.play(cell, isMax);
+            int childEval = minimax(depth - 1, alpha, beta, !isMax); // DFS
+            // unoccupy space
+            position.undo(cell, isMax);
+
+            // if AI's turn
+            if (isMax) {
+                if (childEval > eval || bestMove == -1)
+                    bestMove = cell;
+                eval = Math.max(eval, childEval);
+                alpha = Math.max (alpha, childEval);
+            }
+            // Player's turn 
+            else {
+                if (childEval < eval || bestMove == -1)
+                    bestMove = cell;
+                eval = Math.min(eval, childEval);
+                beta = Math.min(beta, childEval);
+            }
+
+            if (beta <= alpha) {
+                cutoffs += 1;
+                if (i == 0)
+                    firstCutoffs += 1;
+                if (ordered && !aborted)
+                    ordering.cutoff(cell, ply, isMax, depth);
+                break;
+            }
         }
-        // Player's turn 
-        else {
-            int eval = Integer.MAX_VALUE;
-
-            // traverse all empty spaces in the current board state
-            for (int j = 0; j < SIZE; j++)
-                for (int k = 0; k < SIZE; k++)
-                    if (board[j][k] == EMPTY) {
-                        board[j][k] = PLAYER; 
-                        int minEval = minimax(depth - 1, alpha, beta, true); // DFS 
-                        eval = Math.min(eval, minEval);
-                        beta = Math.min(beta, minEval);
-                        board[j][k] = EMPTY;
-                        if (beta <= alpha)
-                            return eval;
-                    }
-            
-            return eval;
+
+        // scores of an unfinished search are not cached
+        if (!aborted) {
+            int move = Symmetry.PERM[symmetry][bestMove];
+
+            if (eval <= alphaOrig)
+                table.store(key, eval, depth, TranspositionTable.UPPER, move);
+            else if (eval >= betaOrig)
+                table.store(key, eval, depth, TranspositionTable.LOWER, move);
+            else
+                table.store(key, eval, depth, TranspositionTable.EXACT, move);
         }
+
+        return eval;
     }
 
     /**
@@ -462,41 +1224,8 @@ public class TicTacToe {
      *         otherwise an evaluated score given by the static evaluation function.
      */
     public int evaluate () {
-        // check if Player or AI won in one of the rows 
-        for (int row = 0; row < SIZE; row++) {
-            if (board[row][0] == board[row][1] && board[row][1] == board[row][2]) {
-                if (board[row][0] == AI)
-                    return Integer.MAX_VALUE;
-                else if (board[row][0] == PLAYER)
-                    return Integer.MIN_VALUE; 
-            }
-        }
-        // check if Player or AI won in one of the columns 
-        for (int col = 0; col < SIZE; col++) {
-            if (board[0][col] == board[1][col] && board[1][col] == board[2][col]) {
-                if (board[0][col] == AI)
-                    return Integer.MAX_VALUE; 
-                else if (board[0][col] == PLAYER)
-                    return Integer.MIN_VALUE; 
-            }
-        }
-        // check if Player or AI won in the left diagonal 
-        if (board[0][0] == board[1][1] && board[1][1] == board[2][2]) {
-            if (board[0][0] == AI)
-                return Integer.MAX_VALUE; 
-            else if (board[0][0] == PLAYER)
-                return Integer.MIN_VALUE;
-        }
-        // check if Player or AI won in the right diagonal 
-        if (board[0][2] == board[1][1] && board[1][1] == board[2][0]) {
-            if (board[0][2] == AI)
-                return Integer.MAX_VALUE;
-            else if (board[0][2] == PLAYER)
-                return Integer.MIN_VALUE;
-        }
-
-        // else if no one won yet, execute static evaluation function
-        return evalFunction ();
+        position.load(board, AI, PLAYER);
+        return position.evaluate();
     }
 
     /**
@@ -514,193 +1243,113 @@ public class TicTacToe {
      * @return  an integer representing the evaluation of a certain board state.
      */
     public int evalFunction () {
-        int result = 0;
-        int pAI = 0;
-        int cAI = 0;
-        int oAI = 0;
-        int dPlayer = 0;
-        int pPlayer = 0;
-        int AIPcs, playerPcs, emptySpaces;
-
-        /*  count pAI (# possible wins for AI)
-            count pPlayer (# possible wins for Player)
-         */
-        // pAI | pPlayer : ROW
-        for (int row = 0; row < SIZE; row++) {
-            AIPcs = playerPcs = emptySpaces = 0;
-
-            for (int col = 0; col < SIZE; col++) {
-                if (board[row][col] == AI)
-                    AIPcs += 1;
-                else if (board[row][col] == PLAYER)
-                    playerPcs += 1;
-                else if (board[row][col] == EMPTY)
-                    emptySpaces += 1;
-            }
-            if (AIPcs + emptySpaces == SIZE &&
-                AIPcs > 0)
-                pAI += 1;
-            else if (playerPcs + emptySpaces == SIZE &&
-                playerPcs > 0)
-                pPlayer += 1;
-        }
+        position.load(board, AI, PLAYER);
+        return position.evalFunction();
+    }
 
-        // pAI | pPlayer : COLUMN
-        for (int col = 0; col < SIZE; col++) {
-            AIPcs = playerPcs = emptySpaces = 0;
-
-            for (int row = 0; row < SIZE; row++) {
-                if (board[row][col] == AI)
-                    AIPcs += 1;
-                else if (board[row][col] == PLAYER)
-                    playerPcs += 1;
-                else if (board[row][col] == EMPTY)
-                    emptySpaces += 1;
-            }
+    /**
+     * Clears the TicTacToe board, sets all tiles to empty
+     */
+    public void resetBoard () {
+        for (int j = 0; j < SIZE; j++)
+            for (int k = 0; k < SIZE; k++)
+                board[j][k] = EMPTY;
 
-            if (AIPcs + emptySpaces == SIZE &&
-                AIPcs > 0)
-                pAI += 1;
-            else if (playerPcs + emptySpaces == SIZE &&
-                     playerPcs > 0)
-                pPlayer += 1;
-        }
+        status = GameStatus.IN_PROGRESS;
+        emptyTiles = SIZE * SIZE;
+    }
 
-        // pAI | pPlayer : L TO R DIAGONAL
-        AIPcs = playerPcs = emptySpaces = 0;
-        for (int diag = 0; diag < SIZE; diag++) {
-            if (board[diag][diag] == AI)
-                AIPcs += 1;
-            else if (board[diag][diag] == PLAYER)
-                playerPcs += 1;
-            else if (board[diag][diag] == EMPTY)
-                emptySpaces += 1;
-        }
+    /**
+     * Places a piece on an empty tile and updates the status of the game,
+     * checking only the lines through that tile
+     * 
+     * @param   row     row of the tile
+     * @param   col     column of the tile
+     * @param   isAI    true to place an AI piece, false for a Player piece
+     */
+    public void play (int row, int col, boolean isAI) {
+        char piece = isAI ? AI : PLAYER;
 
-        if (AIPcs + emptySpaces == SIZE &&
-            AIPcs > 0)
-            pAI += 1;
-        else if (playerPcs + emptySpaces == SIZE &&
-                 playerPcs > 0)
-            pPlayer += 1;
-
-        // pAI | pPlayer : R TO L DIAGONAL
-        AIPcs = playerPcs = emptySpaces = 0;
-        for (int diag1 = 2, diag2 = 0; diag2 < SIZE; diag1--, diag2++) {
-            if (board[diag1][diag2] == AI)
-                AIPcs += 1;
-            else if (board[diag1][diag2] == PLAYER)
-                playerPcs += 1;
-            else if (board[diag1][diag2] == EMPTY)
-                emptySpaces += 1;
-        }
+        board[row][col] = piece;
+        emptyTiles--;
 
-        if (AIPcs + emptySpaces == SIZE &&
-            AIPcs > 0)
-            pAI += 1;
-        else if (playerPcs + emptySpaces == SIZE &&
-                 playerPcs > 0)
-            pPlayer += 1;
-
-
-        /*  COUNT cAI (AI PIECES IN CORNERS)
-            X O X
-            _ O O
-            X _ X
-         */
-        for (int i = 0; i < 3; i+=2)
-            for (int j = 0; j < 3; j+=2)
-                if (board[i][j] == AI)
-                    cAI += 1;
-
-        /*  COUNT oAI (AI PAIRS IN OPPOSITE CORNERS)
-            X _ _   _ _ X
-            _ O _   O _ _
-            _ _ X   X _ _
-         */
-        if (board[0][0] == AI &&
-            board[2][2] == AI)
-            oAI += 1;
-        if (board[0][2] == AI &&
-            board[2][0] == AI)
-            oAI += 1;
-        
-        /*  COUNT dPlayer (ADJACENT PLAYER PAIR PIECES THAT CAN WIN) 
-            _ O O   O _ _   _ O _
-            _ _ _   X O _   _ O _
-            X _ _   _ _ _   X _ _
-         */
-        // dPlayer : ROW
-        for (int row = 0; row < SIZE; row++) {
-            playerPcs = emptySpaces = 0;
-
-            for (int col = 0; col < SIZE; col++) {
-                if (board[row][col] == PLAYER)
-                    playerPcs += 1;
-                else if (board[row][col] == EMPTY)
-                    emptySpaces += 1;
-            }
+        if (completesLine(row, col, piece))
+            status = isAI ? GameStatus.AI_WIN : GameStatus.PLAYER_WIN;
+        else if (emptyTiles == 0)
+            status = GameStatus.DRAW;
+    }
 
-            if (playerPcs == 2 &&
-                emptySpaces == 1)
-                dPlayer += 1;
-        }
+    /**
+     * Gets the tiles of the board holding a piece
+     * 
+     * @param   piece   symbol of the piece
+     * 
+     * @return  the bitmask of the tiles (bit row * SIZE + col)
+     */
+    private int tilesOf (char piece) {
+        int tiles = 0;
 
-        // dPlayer : COL
-        for (int col = 0; col < SIZE; col++) {
-            playerPcs = emptySpaces = 0;
+        for (int cell = 0; cell < SIZE * SIZE; cell++)
+            if (board[cell / SIZE][cell % SIZE] == piece)
+                tiles |= 1 << cell;
 
-            for (int row = 0; row < SIZE; row++) {
-                if (board[row][col] == PLAYER)
-                    playerPcs += 1;
-                else if (board[row][col] == EMPTY)
-                    emptySpaces += 1;
-            }
+        return tiles;
+    }
 
-            if (playerPcs == 2 &&
-                emptySpaces == 1)
-                dPlayer += 1;
-        }
+    /**
+     * Checks if a piece fills one of the lines through its tile
+     * 
+     * @param   row     row of the tile
+     * @param   col     column of the tile
+     * @param   piece   symbol of the piece on the tile
+     * 
+     * @return  true if the row, column or a diagonal through the tile holds only the piece
+     */
+    private boolean completesLine (int row, int col, char piece) {
+        boolean inRow = true, inCol = true, inDiag = row == col, inAntiDiag = row + col == SIZE - 1;
 
-        // dPlayer : L TO R DIAGONAL
-        playerPcs = emptySpaces = 0;
-        for (int diag = 0; diag < SIZE; diag++) {
-            if (board[diag][diag] == PLAYER)
-                playerPcs += 1;
-            else if (board[diag][diag] == EMPTY)
-                emptySpaces += 1;
+        for (int i = 0; i < SIZE; i++) {
+            inRow &= board[row][i] == piece;
+            inCol &= board[i][col] == piece;
+            inDiag &= board[i][i] == piece;
+            inAntiDiag &= board[SIZE - 1 - i][i] == piece;
         }
 
-        if (playerPcs == 2 &&
-            emptySpaces == 1)
-            dPlayer += 1;
-
-        // dPlayer : R TO L DIAGONAL
-        playerPcs = emptySpaces = 0;
-        for (int diag1 = 2, diag2 = 0; diag2 < SIZE; diag1--, diag2++) {
-            if (board[diag1][diag2] == PLAYER)
-                playerPcs += 1;
-            else if (board[diag1][diag2] == EMPTY)
-                emptySpaces += 1;
-        }
+        return inRow || inCol || inDiag || inAntiDiag;
+    }
 
-        if (playerPcs == 2 &&
-            emptySpaces == 1)
-            dPlayer += 1;
+    /**
+     * Recomputes the status of the game from the whole board, needed after
+     * tiles were written into getBoard() directly instead of through play()
+     */
+    public void updateStatus () {
+        int score = evaluate();
 
-        // result = (PX + 2 * C + O) - (3 * D + PO);
-        result = (pAI + 2 * cAI + oAI) - (3 * dPlayer + pPlayer);
+        emptyTiles = getMovesLeft();
+        if (score == Integer.MAX_VALUE)
+            status = GameStatus.AI_WIN;
+        else if (score == Integer.MIN_VALUE)
+            status = GameStatus.PLAYER_WIN;
+        else
+            status = emptyTiles == 0 ? GameStatus.DRAW : GameStatus.IN_PROGRESS;
+    }
 
-        return result;
+    /**
+     * Gets the status of the game kept by play() and updateStatus()
+     * 
+     * @return the status of the game
+     */
+    public GameStatus getStatus () {
+        return status;
     }
 
     /**
-     * Clears the TicTacToe board, sets all tiles to empty
+     * Gets the move placed by the last pickAIMove() call
+     * 
+     * @return the index of the tile (row * SIZE + col), -1 if no move was placed
      */
-    public void resetBoard () {
-        for (int j = 0; j < SIZE; j++)
-            for (int k = 0; k < SIZE; k++)
-                board[j][k] = EMPTY;
+    public int getLastMove () {
+        return lastMove;
     }
 
     /**
@@ -721,6 +1370,15 @@ public class TicTacToe {
         }
     }
 
+    /**
+     * Seeds the random moves of behavior level 0, so a game can be replayed
+     * 
+     * @param   seed    seed of the random number generator
+     */
+    public void setSeed (long seed) {
+        random.setSeed(seed);
+    }
+
     /**
      * Sets the behavior level of the AI
      * 
@@ -729,4 +1387,13 @@ public class TicTacToe {
     public void setAILevel (int AILevel) {
         this.AILevel = AILevel;
     }
+
+    /**
+     * Gets the behavior level of the AI
+     * 
+     * @return  behavior level value
+     */
+    public int getAILevel () {
+        return AILevel;
+    }
 }
@@ -0,0 +1,245 @@
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Fixed size transposition table for the minimax search, keyed by the Zobrist
+ * hash of the bitboard. Each entry stores a score together with the kind of
+ * bound it represents, since alpha-beta pruning only returns exact scores for
+ * positions searched inside the (alpha, beta) window.
+ *
+ * The entries can be shared by several searching threads without locks: each
+ * thread works on its own view() of the table, and every entry is written as
+ * the pair (key XOR data, data), so a probe that reads half of an entry being
+ * overwritten by another thread sees a key mismatch and counts as a miss.
+ * Each long is read and written whole (opaque access), without fences.
+ */
+public class TranspositionTable {
+    /**
+     * Score is the exact minimax value of the position
+     */
+    public static final int EXACT = 1;
+    /**
+     * Score is a lower bound, search was cut off at beta
+     */
+    public static final int LOWER = 2;
+    /**
+     * Score is an upper bound, no move raised alpha
+     */
+    public static final int UPPER = 3;
+    /**
+     * Number of bytes used by a single entry (key and data)
+     */
+    public static final int ENTRY_BYTES = 16;
+    /**
+     * Opaque access to the longs of the entries array
+     */
+    private static final VarHandle ENTRY = MethodHandles.arrayElementVarHandle(long[].class);
+    /**
+     * Entries of the table, shared by all views: slot i holds the key XOR the
+     * data at 2i and the packed data at 2i + 1. Packed data: score (32 bits),
+     * depth (8 bits), bound (8 bits), search generation (8 bits) and best
+     * move (8 bits, 0xFF for none). An empty slot is all zeroes.
+     */
+    private long[] entries;
+    /**
+     * Mask to turn a key into a slot index
+     */
+    private int mask;
+    /**
+     * Generation of the current search, shared by all views, used to replace
+     * entries left over from previous moves first
+     */
+    private AtomicInteger generation;
+    /**
+     * Number of probes of this view that found the position
+     */
+    private long hits;
+    /**
+     * Number of probes of this view that did not find the position
+     */
+    private long misses;
+    /**
+     * Number of stores of this view that replaced a different position
+     */
+    private long overwrites;
+    /**
+     * Packed data of the last successful probe of this view
+     */
+    private long found;
+
+    /**
+     * Creates a table using at most the given amount of memory. The number of
+     * entries is rounded down to a power of two.
+     *
+     * @param   bytes   memory budget of the table
+     */
+    public TranspositionTable (long bytes) {
+        int capacity = Integer.highestOneBit((int) Math.max(1, Math.min(bytes / ENTRY_BYTES, 1 << 29)));
+
+        entries = new long[2 * capacity];
+        mask = capacity - 1;
+        generation = new AtomicInteger ();
+    }
+
+    /**
+     * Creates another view of the entries of a table
+     *
+     * @param   table   the table to share the entries of
+     */
+    private TranspositionTable (TranspositionTable table) {
+        entries = table.entries;
+        mask = table.mask;
+        generation = table.generation;
+    }
+
+    /**
+     * Gets a new view of this table for another thread. Views share the entries
+     * and search generation, and keep their own probe result and counters.
+     *
+     * @return a view sharing the entries of this table
+     */
+    public TranspositionTable view () {
+        return new TranspositionTable (this);
+    }
+
+    /**
+     * Looks up a position. On a hit the stored entry can be read through
+     * getScore(), getDepth(), getBound() and getMove() until the next probe.
+     *
+     * @param   key     Zobrist key of the position
+     *
+     * @return  true if the position is stored in the table, otherwise false
+     */
+    public boolean probe (long key) {
+        int slot = ((int) key & mask) << 1;
+        long data = (long) ENTRY.getOpaque(entries, slot + 1);
+
+        if (((long) ENTRY.getOpaque(entries, slot) ^ data) == key && data != 0) {
+            found = data;
+            hits++;
+            return true;
+        }
+
+        misses++;
+        return false;
+    }
+
+    /**
+     * Stores the search result of a position. An occupied slot is replaced if
+     * it holds the same position, an entry from an older search, or an entry
+     * searched to a depth not greater than the new one.
+     *
+     * @param   key     Zobrist key of the position
+     * @param   score   score returned by the search
+     * @param   depth   remaining depth the position was searched to
+     * @param   bound   EXACT, LOWER or UPPER
+     * @param   move    best or cutoff move found, -1 if none
+     */
+    public void store (long key, int score, int depth, int bound, int move) {
+        int slot = ((int) key & mask) << 1;
+        long old = (long) ENTRY.getOpaque(entries, slot + 1);
+        int current = generation.get() & 0xFF;
+
+        if (old != 0 && ((long) ENTRY.getOpaque(entries, slot) ^ old) != key) {
+            if ((int) (old >>> 48 & 0xFF) == current && depth < (int) (old >>> 32 & 0xFF))
+                return;
+            overwrites++;
+        }
+
+        long data = (score & 0xFFFFFFFFL) | (long) (depth & 0xFF) << 32 |
+                    (long) bound << 40 | (long) current << 48 | (long) (move & 0xFF) << 56;
+        ENTRY.setOpaque(entries, slot + 1, data);
+        ENTRY.setOpaque(entries, slot, key ^ data);
+    }
+
+    /**
+     * Gets the score of the last found entry
+     *
+     * @return the stored score
+     */
+    public int getScore () {
+        return (int) found;
+    }
+
+    /**
+     * Gets the depth of the last found entry
+     *
+     * @return the remaining depth the stored score was searched to
+     */
+    public int getDepth () {
+        return (int) (found >>> 32 & 0xFF);
+    }
+
+    /**
+     * Gets the bound of the last found entry
+     *
+     * @return EXACT, LOWER or UPPER
+     */
+    public int getBound () {
+        return (int) (found >>> 40 & 0xFF);
+    }
+
+    /**
+     * Gets the move of the last found entry
+     *
+     * @return the index of the stored move, -1 if none
+     */
+    public int getMove () {
+        int move = (int) (found >>> 56);
+        return move == 0xFF ? -1 : move;
+    }
+
+    /**
+     * Marks the start of a new search so entries of earlier searches are
+     * preferred for replacement. Stored entries remain valid and are still found.
+     */
+    public void newSearch () {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Removes all entries and resets the counters of this view. No other
+     * thread may search on the table meanwhile.
+     */
+    public void clear () {
+        Arrays.fill(entries, 0);
+        hits = misses = overwrites = 0;
+    }
+
+    /**
+     * Gets the number of entries the table can hold
+     *
+     * @return the capacity of the table
+     */
+    public int getCapacity () {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the number of successful probes of this view
+     *
+     * @return the number of hits
+     */
+    public long getHits () {
+        return hits;
+    }
+
+    /**
+     * Gets the number of failed probes of this view
+     *
+     * @return the number of misses
+     */
+    public long getMisses () {
+        return misses;
+    }
+
+    /**
+     * Gets the number of stores of this view that evicted another position
+     *
+     * @return the number of overwrites
+     */
+    public long getOverwrites () {
+        return overwrites;
+    }
+}
@@ -52,6 +52,10 @@ public class View extends Application {
      * Score label for AI and Player score found in the in-game screen.
      */
     private Label scoreLabel;
+    /**
+     * Label shown in the in-game screen while the AI is searching for its move.
+     */
+    private Label thinkingLabel;
     /**
      * Stage for the play again window.
      */
@@ -129,7 +133,7 @@ public class View extends Application {
         Label mainMenuLabel = new Label ("tictactoe");
         mainMenuLabel.setFont (Font.loadFont (new FileInputStream ("fonts/pastel crayon.ttf"), 75));
         mainMenuLabel.setStyle ("-fx-text-fill: #ffd166");
-        Label AILevelLabel = new Label ("AI Level [0 - 4]:");
+        Label AILevelLabel = new Label ("AI Level [0 - " + (TicTacToe.LEVELS - 1) + "]:");
         AILevelLabel.setFont (Font.loadFont (new FileInputStream ("fonts/pastel crayon.ttf"), 30));
         AILevelLabel.setStyle ("-fx-text-fill: #caffbf;");
 
@@ -209,6 +213,14 @@ public class View extends Application {
         scoreLabel.setFont(Font.loadFont(new FileInputStream("fonts/pastel crayon.ttf"), 35));
         scoreLabel.setStyle("-fx-text-fill: #ffd166");
 
+        /* Thinking Label, hidden until the AI searches */
+        thinkingLabel = new Label("AI is thinking...");
+        thinkingLabel.setFont(Font.loadFont(new FileInputStream("fonts/pastel crayon.ttf"), 22));
+        thinkingLabel.setStyle("-fx-text-fill: #caffbf");
+        thinkingLabel.setVisible(false);
+        VBox topLayout = new VBox(scoreLabel, thinkingLabel);
+        topLayout.setAlignment(Pos.CENTER);
+
         /* Board */
         GridPane board;
         board = new GridPane();
@@ -262,11 +274,11 @@ public class View extends Application {
 
         /* Adding of GUI elements to Layouts */
         inGameMainLayout.setCenter(board);
-        inGameMainLayout.setTop(scoreLabel);
+        inGameMainLayout.setTop(topLayout);
         inGameMainLayout.setBottom(mainMenuBtn);
 
         inGameMainLayout.setAlignment(board, Pos.CENTER);
-        inGameMainLayout.setAlignment(scoreLabel, Pos.CENTER);
+        inGameMainLayout.setAlignment(topLayout, Pos.CENTER);
         inGameMainLayout.setAlignment(mainMenuBtn, Pos.CENTER);
 
         inGameScene = new Scene(inGameMainLayout, 450, 450);
@@ -299,6 +311,17 @@ public class View extends Application {
         scoreLabel.setText ("AI: " + AIScore + "   " + "Player: " + playerScore);
     }
 
+    /**
+     * Shows or hides the thinking state of the in-game screen. Used while
+     * the agent searches for its move.
+     * 
+     * @param thinking true if the agent is searching, otherwise false
+     */
+    public void setThinking (boolean thinking) {
+        thinkingLabel.setVisible (thinking);
+        inGameScene.setCursor (thinking ? Cursor.WAIT : Cursor.DEFAULT);
+    }
+
     /**
      * Shows the in-game scene on the main window.
      */
@@ -0,0 +1,185 @@
+package tictactoe.benchmarks;
+
+import java.lang.invoke.*;
+
+/**
+ * A TicTacToe game driven through method handles. The engine classes are in
+ * the default package, which a named package cannot import, so they are
+ * looked up by name once; constant method handles are inlined by the JIT
+ * like direct calls.
+ */
+final class Engine {
+    /**
+     * Engine classes looked up by name
+     */
+    private static final Class<?> GAME = type("TicTacToe"), TABLE = type("TranspositionTable");
+    /**
+     * Handles of the engine methods the benchmarks call
+     */
+    private static final MethodHandle NEW = constructor(GAME);
+    private static final MethodHandle SET_GAME_PIECES = method(GAME, "setGamePieces", void.class, boolean.class);
+    private static final MethodHandle SET_AI_LEVEL = method(GAME, "setAILevel", void.class, int.class);
+    private static final MethodHandle GET_BOARD = method(GAME, "getBoard", char[][].class);
+    private static final MethodHandle GET_TABLE = method(GAME, "getTable", TABLE);
+    private static final MethodHandle CLEAR = method(TABLE, "clear", void.class);
+    private static final MethodHandle PICK_AI_MOVE = method(GAME, "pickAIMove", void.class);
+    private static final MethodHandle SCORE_MOVE = method(GAME, "scoreMove", int.class, int.class, int.class);
+    private static final MethodHandle EVALUATE = method(GAME, "evaluate", int.class);
+    private static final MethodHandle EVAL_FUNCTION = method(GAME, "evalFunction", int.class);
+    private static final MethodHandle GET_NODES = method(GAME, "getNodes", long.class);
+    private static final MethodHandle RESET_STATS = method(GAME, "resetStats", void.class);
+
+    /**
+     * The TicTacToe instance
+     */
+    private final Object game;
+
+    /**
+     * Creates a game at a behavior level
+     *
+     * @param   level   behavior level of the AI
+     */
+    Engine (int level) {
+        try {
+            game = (Object) NEW.invokeExact();
+            SET_AI_LEVEL.invokeExact(game, level);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * Puts a position on the board
+     *
+     * @param   position    the position to set up
+     */
+    void load (Position position) {
+        try {
+            char[][] board = (char[][]) GET_BOARD.invokeExact(game);
+
+            SET_GAME_PIECES.invokeExact(game, position.isAIFirst());
+            for (int cell = 0; cell < position.getBoard().length(); cell++)
+                board[cell / 3][cell % 3] = position.getBoard().charAt(cell);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * Empties the transposition table of the game
+     */
+    void clearTable () {
+        try {
+            CLEAR.invoke(GET_TABLE.invoke(game));
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * Lets the AI place its move on the board
+     */
+    void pickAIMove () {
+        try {
+            PICK_AI_MOVE.invokeExact(game);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * Scores an AI move with the search of the game's behavior level
+     *
+     * @param   row     row of the empty tile
+     * @param   col     column of the empty tile
+     *
+     * @return  the score of the board state after the move
+     */
+    int scoreMove (int row, int col) {
+        try {
+            return (int) SCORE_MOVE.invokeExact(game, row, col);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * @return the win check and static evaluation of the board
+     */
+    int evaluate () {
+        try {
+            return (int) EVALUATE.invokeExact(game);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * @return the static evaluation of the board
+     */
+    int evalFunction () {
+        try {
+            return (int) EVAL_FUNCTION.invokeExact(game);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * @return the number of nodes searched since the last resetStats()
+     */
+    long getNodes () {
+        try {
+            return (long) GET_NODES.invokeExact(game);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * Resets the node and cutoff counters
+     */
+    void resetStats () {
+        try {
+            RESET_STATS.invokeExact(game);
+        } catch (Throwable e) {
+            throw new IllegalStateException (e);
+        }
+    }
+
+    /**
+     * Loads an engine class from the default package
+     */
+    private static Class<?> type (String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new ExceptionInInitializerError (e);
+        }
+    }
+
+    /**
+     * Looks up the public no-argument constructor of a class
+     */
+    private static MethodHandle constructor (Class<?> type) {
+        try {
+            return MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class))
+                                .asType(MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError (e);
+        }
+    }
+
+    /**
+     * Looks up a public method, with the receiver type erased to Object
+     */
+    private static MethodHandle method (Class<?> type, String name, Class<?> result, Class<?>... parameters) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().findVirtual(type, name, MethodType.methodType(result, parameters));
+            return handle.asType(handle.type().changeParameterType(0, Object.class)
+                                              .changeReturnType(result.isPrimitive() || result.isArray() ? result : Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError (e);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package tictactoe.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Latency of the static evaluation of a board: evaluate() (win check, then the
+ * evaluation function) and evalFunction() alone. Both include loading the
+ * bitboard from the board array, as every caller outside the search does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluationBenchmark {
+    @Param
+    public Position position;
+
+    private Engine engine;
+
+    @Setup
+    public void setUp () {
+        engine = new Engine (3);
+        engine.load(position);
+    }
+
+    @Benchmark
+    public int evaluate () {
+        return engine.evaluate();
+    }
+
+    @Benchmark
+    public int evalFunction () {
+        return engine.evalFunction();
+    }
+}
@@ -0,0 +1,43 @@
+package tictactoe.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Latency of pickAIMove() for every behavior level, the way the game calls it:
+ * level 3 answers from the perfect play table when the position is in it.
+ * The board is set up again and the transposition table emptied before every
+ * call, outside the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PickMoveBenchmark {
+    @Param
+    public Position position;
+
+    @Param({"0", "1", "2", "3", "4", "5"})
+    public int level;
+
+    private Engine engine;
+
+    @Setup
+    public void setUp () {
+        engine = new Engine (level);
+    }
+
+    @Setup(Level.Invocation)
+    public void loadPosition () {
+        engine.load(position);
+        engine.clearTable();
+    }
+
+    @Benchmark
+    public void pickAIMove () {
+        engine.pickAIMove();
+    }
+}
@@ -0,0 +1,54 @@
+package tictactoe.benchmarks;
+
+/**
+ * Standard positions the benchmarks run on, with the AI to move. Boards are
+ * listed in row-major order, X always has the first move.
+ */
+public enum Position {
+    /**
+     * Empty board, the AI has the first move
+     */
+    OPENING_FIRST ("         ", true),
+    /**
+     * The Player took the center, the AI has the second move
+     */
+    OPENING_SECOND ("    X    ", false),
+    /**
+     * Four pieces on the board, the AI (X) to move
+     */
+    MIDGAME_FIRST ("XO  X   O", true),
+    /**
+     * Three pieces on the board, the AI (O) to move
+     */
+    MIDGAME_SECOND ("X   O  X ", false),
+    /**
+     * Six pieces on the board, the AI (X) to move
+     */
+    NEAR_TERMINAL_FIRST ("XOXOOX   ", true),
+    /**
+     * Seven pieces on the board, the AI (O) to move
+     */
+    NEAR_TERMINAL_SECOND ("XOXOOXX  ", false);
+
+    /**
+     * Tiles in row-major order: X, O or a space for an empty tile
+     */
+    private final String board;
+    /**
+     * Indicator if the AI had the first move (plays X)
+     */
+    private final boolean AIFirst;
+
+    Position (String board, boolean AIFirst) {
+        this.board = board;
+        this.AIFirst = AIFirst;
+    }
+
+    public String getBoard () {
+        return board;
+    }
+
+    public boolean isAIFirst () {
+        return AIFirst;
+    }
+}
@@ -0,0 +1,60 @@
+package tictactoe.benchmarks;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Throughput of the minimax search: one operation scores every root move of a
+ * position with scoreMove(), the search pickAIMove() runs for levels 3 and 4.
+ * Both levels start every operation with an empty transposition table. The
+ * "nodes" counter reports the minimax nodes searched per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param
+    public Position position;
+
+    @Param({"3", "4"})
+    public int level;
+
+    private Engine engine;
+
+    /**
+     * Nodes searched, reported per second next to the operations
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setUp () {
+        engine = new Engine (level);
+        engine.load(position);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable () {
+        engine.clearTable();
+        engine.resetStats();
+    }
+
+    @Benchmark
+    public int minimax (Nodes counter) {
+        int sum = 0;
+
+        for (int cell = 0; cell < position.getBoard().length(); cell++)
+            if (position.getBoard().charAt(cell) == ' ')
+                sum += engine.scoreMove(cell / 3, cell % 3);
+
+        counter.nodes += engine.getNodes();
+        return sum;
+    }
+}